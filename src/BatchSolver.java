@@ -0,0 +1,345 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Solves every board file in a directory, or every board in a corpus file
+// (see BulkBoardLoader), without the visualizer, several boards at a time,
+// and reports each board's solution length, states expanded and solve
+// time as it finishes, followed by the overall boards per second.
+//
+// Usage: BatchSolver [directory | corpus] [-threads n] [-virtual]
+//                    [-out file] [-store file] [-stats] [-pdb]
+//
+// The directory defaults to testInput, and hidden files in it are skipped.
+// Boards in a corpus are named by the file name and their position in it.
+// Boards run on a work-stealing pool with one thread per core unless
+// -threads says otherwise; -virtual runs each board on its own virtual
+// thread instead, where the JVM has them.  Unsolvable boards are reported
+// with a length of -1.  With -store, boards already in the SolutionStore
+// file are not searched, and new solutions are appended to it.  -stats
+// adds each board's SearchStats to its line.  -pdb orders the search with
+// PatternDatabaseHeuristic, which only pays off when many boards share a
+// layout.
+public class BatchSolver
+{
+	private static final String DEFAULT_DIRECTORY = "testInput";
+
+	// Boards queued but not yet reported, at most, so a large corpus is
+	// not all held in memory at once
+	private static final int MAX_PENDING = 1024;
+
+	// Told about each board as it finishes, in the order they finish
+	public interface ResultListener
+	{
+		void boardSolved(BoardResult result);
+	}
+
+	private SolverOptions options;
+	private ExecutorService executor;
+
+	// Stats of the last search finished on each thread, so they are also
+	// known for boards whose Solver throws
+	private final ThreadLocal<SearchStats> lastStats = new ThreadLocal<SearchStats>();
+
+	// Replaces the options' search listener with one that records each
+	// board's stats
+	public BatchSolver(SolverOptions optionsP, ExecutorService executorP)
+	{
+		options = optionsP;
+		executor = executorP;
+		options.setSearchListener(new SearchListener()
+		{
+			public void searchProgress(SearchStats stats)
+			{
+			}
+
+			public void searchFinished(SearchStats stats)
+			{
+				lastStats.set(stats);
+			}
+		});
+	}
+
+	// Solves each file, passing each result to listener, and returns the
+	// number solved
+	public int solveAll(File[] files, ResultListener listener) throws InterruptedException
+	{
+		Batch batch = new Batch(listener);
+		for (final File file : files)
+		{
+			batch.submit(file.toString(), new Callable<BoardResult>()
+			{
+				public BoardResult call()
+				{
+					In in = new In(file);
+					PuzzleBoard board = new PuzzleBoard(PuzzleManager.deserializeIntoVehicleArray(in));
+					in.close();
+					return solve(file.getName(), board);
+				}
+			});
+		}
+		return batch.finish();
+	}
+
+	// Solves each board in a corpus file, passing each result to listener,
+	// and returns the number solved.  Boards are queued as they are read.
+	public int solveCorpus(File corpus, ResultListener listener) throws InterruptedException, IOException
+	{
+		Batch batch = new Batch(listener);
+		try (BulkBoardLoader loader = new BulkBoardLoader(corpus))
+		{
+			int count = 0;
+			while (loader.hasNext())
+			{
+				final PuzzleBoard board = loader.nextPackedBoard();
+				final String name = corpus.getName() + "#" + (++count);
+				batch.submit(name, new Callable<BoardResult>()
+				{
+					public BoardResult call()
+					{
+						return solve(name, board);
+					}
+				});
+			}
+		}
+		return batch.finish();
+	}
+
+	// Boards of one solveAll or solveCorpus call, reported as they finish
+	private class Batch
+	{
+		private final CompletionService<BoardResult> completion = new ExecutorCompletionService<BoardResult>(executor);
+		private final Map<Future<BoardResult>, String> pending = new HashMap<Future<BoardResult>, String>();
+		private final ResultListener listener;
+		private int count;
+
+		public Batch(ResultListener listenerP)
+		{
+			listener = listenerP;
+		}
+
+		// Queues a board, first reporting any finished, and waiting for one
+		// to finish if MAX_PENDING are queued
+		public void submit(String name, Callable<BoardResult> task) throws InterruptedException
+		{
+			Future<BoardResult> done;
+			while ((done = completion.poll()) != null)
+			{
+				report(done);
+			}
+			while (pending.size() >= MAX_PENDING)
+			{
+				report(completion.take());
+			}
+			pending.put(completion.submit(task), name);
+		}
+
+		// Waits for and reports the rest, returning the number reported
+		public int finish() throws InterruptedException
+		{
+			while (!pending.isEmpty())
+			{
+				report(completion.take());
+			}
+			return count;
+		}
+
+		private void report(Future<BoardResult> future) throws InterruptedException
+		{
+			String name = pending.remove(future);
+			try
+			{
+				listener.boardSolved(future.get());
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException("Solving " + name + " failed", e.getCause());
+			}
+			count++;
+		}
+	}
+
+	private BoardResult solve(String name, PuzzleBoard board)
+	{
+		long start = System.nanoTime();
+		int length = -1;
+		lastStats.remove();
+		try
+		{
+			length = new Solver(board, options).getSolution().length();
+		}
+		catch (NoSuchElementException e)
+		{
+			// No solution
+		}
+		return new BoardResult(name, length, lastStats.get(), System.nanoTime() - start);
+	}
+
+	public static class BoardResult
+	{
+		private String file;
+		private int length;
+		private SearchStats stats;
+		private long nanos;
+
+		public BoardResult(String fileP, int lengthP, SearchStats statsP, long nanosP)
+		{
+			file = fileP;
+			length = lengthP;
+			stats = statsP;
+			nanos = nanosP;
+		}
+
+		public String getFile()
+		{
+			return file;
+		}
+
+		// Moves in the shortest solution, or -1 if there is none
+		public int getLength()
+		{
+			return length;
+		}
+
+		// States expanded, or 0 if there was no search, as for boards found
+		// in the SolutionStore
+		public int getNodesExpanded()
+		{
+			return (stats == null) ? 0 : (int) stats.getNodesExpanded();
+		}
+
+		public SearchStats getStats()
+		{
+			return stats;
+		}
+
+		public long getNanos()
+		{
+			return nanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return file + " " + length + " " + getNodesExpanded() + " " + String.format("%.3f", nanos / 1e6) + "ms";
+		}
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor(), looked up at run time so
+	// this still compiles and runs on JVMs without virtual threads.
+	// Returns null if there are none.
+	private static ExecutorService createVirtualThreadExecutor()
+	{
+		try
+		{
+			Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return null;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException
+	{
+		String directory = DEFAULT_DIRECTORY;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean virtual = false;
+		boolean stats = false;
+		PrintStream out = System.out;
+		SolverOptions options = PuzzleManager.createSolverOptions();
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-threads"))
+			{
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-virtual"))
+			{
+				virtual = true;
+			}
+			else if (args[i].equals("-store"))
+			{
+				options.setSolutionStore(new SolutionStore(new File(args[++i]), true));
+			}
+			else if (args[i].equals("-stats"))
+			{
+				stats = true;
+			}
+			else if (args[i].equals("-pdb"))
+			{
+				options.setHeuristic(new PatternDatabaseHeuristic());
+			}
+			else if (args[i].equals("-out"))
+			{
+				out = new PrintStream(args[++i]);
+			}
+			else
+			{
+				directory = args[i];
+			}
+		}
+
+		File input = new File(directory);
+		File[] files = null;
+		if (!input.isFile())
+		{
+			files = PuzzleManager.listBoardFiles(input);
+			if (files == null)
+			{
+				throw new IllegalArgumentException("Not a directory or corpus file: " + directory);
+			}
+		}
+
+		ExecutorService executor = virtual ? createVirtualThreadExecutor() : null;
+		if (virtual && executor == null)
+		{
+			System.err.println("Virtual threads are not available; using a work-stealing pool");
+		}
+		if (executor == null)
+		{
+			executor = new ForkJoinPool(threads);
+		}
+
+		final PrintStream output = out;
+		final boolean printStats = stats;
+		ResultListener listener = new ResultListener()
+		{
+			public void boardSolved(BoardResult result)
+			{
+				output.println(printStats ? result + " " + result.getStats() : result.toString());
+			}
+		};
+
+		long start = System.nanoTime();
+		int count;
+		try
+		{
+			BatchSolver solver = new BatchSolver(options, executor);
+			count = (files == null) ? solver.solveCorpus(input, listener) : solver.solveAll(files, listener);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		out.println(String.format("%d boards in %.3fs, %.1f boards/sec", count, seconds, count / seconds));
+		if (out != System.out)
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+import java.util.NoSuchElementException;
+
+// Breadth-first search from the start state and, at the same time, backward
+// from every goal state, until the two meet.  Every move can be undone, so
+// searching backward uses the same neighbors as searching forward.
+//
+// Each side expands one whole layer at a time, the side with the smaller
+// frontier going next.  A state is checked against the other side's table
+// as soon as it is reached, so once the best meeting found costs no more
+// than the two depths searched so far added together, no shorter path can
+// be left and the search stops.
+//
+// The heuristic is not used: each side only has to search about half the
+// solution depth, which on long puzzles reaches far fewer states than A*.
+public class BidirectionalSearch
+{
+	private BoardLayout layout;
+	private StateTable forward;
+	private StateTable backward;
+
+	// Cheapest path found so far, through meetingState
+	private int best;
+	private long meetingState;
+
+	private int nodesExpanded;
+
+	// goals must hold every goal state reachable from start, such as
+	// BoardLayout.getGoalStates() does when start has no overlapping vehicles
+	public BidirectionalSearch(BoardLayout layoutP, long start, long[] goals)
+	{
+		layout = layoutP;
+		forward = new StateTable();
+		backward = new StateTable(goals.length * 4);
+		best = Integer.MAX_VALUE;
+
+		for (long goal : goals)
+		{
+			int hash = hash(goal);
+			if (backward.find(goal, hash) == StateTable.NO_ENTRY)
+			{
+				backward.add(goal, hash, 0, StateTable.NO_ENTRY);
+			}
+		}
+		int hash = hash(start);
+		forward.add(start, hash, 0, StateTable.NO_ENTRY);
+		if (backward.find(start, hash) != StateTable.NO_ENTRY)
+		{
+			best = 0;
+			meetingState = start;
+		}
+
+		search();
+	}
+
+	// Both tables are hashed on ZobristKeys, so a neighbor's hash follows
+	// from its parent's with two XORs, and serves for both tables
+	private int hash(long state)
+	{
+		return ZobristKeys.hash(ZobristKeys.key(layout, state));
+	}
+
+	private void search()
+	{
+		Expander forwardExpander = new Expander(forward, backward);
+		Expander backwardExpander = new Expander(backward, forward);
+		int forwardStart = 0;
+		int backwardStart = 0;
+		int forwardDepth = 0;
+		int backwardDepth = 0;
+
+		while (best > forwardDepth + backwardDepth)
+		{
+			int forwardLayer = forward.size() - forwardStart;
+			int backwardLayer = backward.size() - backwardStart;
+			if (forwardLayer == 0 || backwardLayer == 0)
+			{
+				// One side has reached everything it can, and each of its
+				// states has been checked against the other side
+				break;
+			}
+
+			if (forwardLayer <= backwardLayer)
+			{
+				int end = forward.size();
+				forwardExpander.expandLayer(forwardStart, end);
+				forwardStart = end;
+				forwardDepth++;
+			}
+			else
+			{
+				int end = backward.size();
+				backwardExpander.expandLayer(backwardStart, end);
+				backwardStart = end;
+				backwardDepth++;
+			}
+		}
+
+		if (best == Integer.MAX_VALUE)
+		{
+			throw new NoSuchElementException("No solution");
+		}
+	}
+
+	private class Expander implements NeighborVisitor
+	{
+		private StateTable table;
+		private StateTable other;
+		private int parent;
+		private long parentState;
+
+		public Expander(StateTable tableP, StateTable otherP)
+		{
+			table = tableP;
+			other = otherP;
+		}
+
+		private void expandLayer(int start, int end)
+		{
+			for (int entry = start; entry < end; entry++)
+			{
+				parent = entry;
+				parentState = table.getKey(entry);
+				layout.forEachNeighbor(parentState, this);
+				nodesExpanded++;
+			}
+		}
+
+		public void visitNeighbor(int id, int delta)
+		{
+			long neighbor = layout.move(parentState, id, delta);
+			int hash = ZobristKeys.hash(ZobristKeys.move(layout, table.getHash(parent), parentState, id, delta));
+			if (table.find(neighbor, hash) != StateTable.NO_ENTRY)
+			{
+				return;
+			}
+			int cost = table.getCost(parent) + 1;
+			table.add(neighbor, hash, cost, parent);
+
+			int meeting = other.find(neighbor, hash);
+			if (meeting != StateTable.NO_ENTRY && cost + other.getCost(meeting) < best)
+			{
+				best = cost + other.getCost(meeting);
+				meetingState = neighbor;
+			}
+		}
+	}
+
+	public int getNodesExpanded()
+	{
+		return nodesExpanded;
+	}
+
+	// Every state from the start to a goal, both included
+	public long[] getPath()
+	{
+		long[] path = new long[best + 1];
+		int entry = forward.find(meetingState, hash(meetingState));
+		for (int i = forward.getCost(entry); i >= 0; i--)
+		{
+			path[i] = forward.getKey(entry);
+			entry = forward.getParent(entry);
+		}
+
+		entry = backward.find(meetingState, hash(meetingState));
+		for (int i = best - backward.getCost(entry); i <= best; i++)
+		{
+			path[i] = backward.getKey(entry);
+			entry = backward.getParent(entry);
+		}
+		return path;
+	}
+}
@@ -0,0 +1,150 @@
+// A tighter bound than BlockingHeuristic that also works out how far each
+// vehicle in the red car's way must slide to get out of it, and what is in
+// the way of that slide.
+//
+// To clear some cells of its lane, a vehicle has to slide at least to the
+// nearest offset, in one direction or the other, that leaves them free.
+// Every vehicle in the cells it slides through must then clear those cells
+// too, and so on for up to maxDepth levels.  Each vehicle is charged for
+// the cheaper of its two directions.  Vehicles already looked at under one
+// blocker are treated as absent when costing later blockers, so no
+// vehicle's moves are counted twice and the bound stays admissible.
+public class BlockerAnalysisHeuristic implements Heuristic
+{
+	private static final int DEFAULT_MAX_DEPTH = 3;
+
+	private int maxDepth;
+
+	public BlockerAnalysisHeuristic()
+	{
+		this(DEFAULT_MAX_DEPTH);
+	}
+
+	// maxDepth = 1 only charges the red car's direct blockers
+	public BlockerAnalysisHeuristic(int maxDepthP)
+	{
+		if (maxDepthP < 1)
+		{
+			throw new IllegalArgumentException("maxDepth must be at least 1: " + maxDepthP);
+		}
+		maxDepth = maxDepthP;
+	}
+
+	public int estimate(BoardLayout layout, long state)
+	{
+		int redColumn = layout.getOffset(state, 0);
+		long swept = sweptCells(layout, 0, redColumn, 4);
+		long result = clearCells(layout, state, swept, maxDepth, 1L);
+		return Math.min(4 - redColumn + cost(result), DEAD_END);
+	}
+
+	// Charges every vehicle outside excluded that covers any swept cell for
+	// clearing the swept cells in its lane.  Returns the total cost packed
+	// with the updated excluded set.
+	private long clearCells(BoardLayout layout, long state, long swept, int depth, long excluded)
+	{
+		int total = 0;
+		for (int id : layout.getVehicleIds())
+		{
+			if ((excluded & (1L << id)) != 0)
+			{
+				continue;
+			}
+			int offset = layout.getOffset(state, id);
+			if ((layout.getCellMask(id, offset) & swept) == 0)
+			{
+				continue;
+			}
+
+			int low = Integer.MAX_VALUE;
+			int high = -1;
+			for (int position = 0; position < laneLength(layout, id); position++)
+			{
+				if ((swept & (1L << laneCell(layout, id, position))) != 0)
+				{
+					low = Math.min(low, position);
+					high = position;
+				}
+			}
+
+			long result = clearVehicle(layout, state, id, low, high, depth, excluded);
+			total += cost(result);
+			excluded = excludedSet(result);
+		}
+		return pack(total, excluded);
+	}
+
+	// Lower bound on the moves for vehicle id to leave positions low..high
+	// of its lane free, plus the moves of whatever is in the way
+	private long clearVehicle(BoardLayout layout, long state, int id, int low, int high, int depth, long excluded)
+	{
+		int offset = layout.getOffset(state, id);
+		int length = layout.getLength(id);
+		long withSelf = excluded | (1L << id);
+		long considered = withSelf;
+		int best = DEAD_END;
+
+		for (int direction = -1; direction <= 1; direction += 2)
+		{
+			int target = (direction < 0) ? low - length : high + 1;
+			if (target < 0 || target >= layout.getNumOffsets(id))
+			{
+				continue;
+			}
+
+			int cost = Math.abs(target - offset);
+			if (depth > 1)
+			{
+				long swept = sweptCells(layout, id, offset, target);
+				long result = clearCells(layout, state, swept, depth - 1, withSelf);
+				cost += cost(result);
+				considered |= excludedSet(result);
+			}
+			best = Math.min(best, cost);
+		}
+
+		return pack(Math.min(best, DEAD_END), considered);
+	}
+
+	// Cells vehicle id passes into when sliding from one offset to another
+	private static long sweptCells(BoardLayout layout, int id, int from, int to)
+	{
+		long cells = 0;
+		for (int offset = Math.min(from, to); offset <= Math.max(from, to); offset++)
+		{
+			cells |= layout.getCellMask(id, offset);
+		}
+		return cells & ~layout.getCellMask(id, from);
+	}
+
+	private static int laneLength(BoardLayout layout, int id)
+	{
+		return layout.getIsHorizontal(id) ? PuzzleManager.NUM_COLUMNS : PuzzleManager.NUM_ROWS;
+	}
+
+	private static int laneCell(BoardLayout layout, int id, int position)
+	{
+		if (layout.getIsHorizontal(id))
+		{
+			return BoardLayout.cellIndex(layout.getLane(id), position);
+		}
+		return BoardLayout.cellIndex(position, layout.getLane(id));
+	}
+
+	// Results carry a cost in the high half and an excluded id set in the
+	// low half
+	private static long pack(int cost, long excluded)
+	{
+		return ((long) cost << 32) | excluded;
+	}
+
+	private static int cost(long result)
+	{
+		return (int) (result >>> 32);
+	}
+
+	private static long excludedSet(long result)
+	{
+		return result & 0xffffffffL;
+	}
+}
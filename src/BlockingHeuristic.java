@@ -0,0 +1,25 @@
+// The original PuzzleBoard.heuristicCostToGoal(): the red car's distance to
+// the exit plus one per occupied cell in its way
+public class BlockingHeuristic implements Heuristic
+{
+	public int estimate(BoardLayout layout, long state)
+	{
+		return layout.heuristicCostToGoal(state);
+	}
+
+	// The red car only moves through empty cells and leaves empty ones, so
+	// moving it changes just its distance.  Any other vehicle changes the
+	// count by the cells it covers in the red car's way after the move,
+	// less those before.
+	@Override
+	public int update(BoardLayout layout, long parent, int parentEstimate, long child, int id, int delta)
+	{
+		if (id == 0)
+		{
+			return parentEstimate - delta;
+		}
+		long ahead = layout.getCellsAhead(parent);
+		return parentEstimate + Long.bitCount(layout.getCellMask(id, layout.getOffset(child, id)) & ahead)
+				- Long.bitCount(layout.getCellMask(id, layout.getOffset(parent, id)) & ahead);
+	}
+}
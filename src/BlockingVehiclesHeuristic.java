@@ -0,0 +1,44 @@
+// Lower bound for the vehicle-move metric, where sliding one vehicle any
+// distance counts as one move: the red car must move unless it is already
+// at the exit, and so must every vehicle between it and the exit.
+public class BlockingVehiclesHeuristic implements Heuristic
+{
+	public int estimate(BoardLayout layout, long state)
+	{
+		int redColumn = layout.getOffset(state, 0);
+		if (redColumn == 4)
+		{
+			return 0;
+		}
+
+		long ahead = layout.getCellsAhead(state);
+		int moves = 1;
+		for (int id : layout.getVehicleIds())
+		{
+			if (id != 0 && (layout.getCellMask(id, layout.getOffset(state, id)) & ahead) != 0)
+			{
+				moves++;
+			}
+		}
+		return moves;
+	}
+
+	// Moving any vehicle but the red car changes the count by one at most,
+	// if it gets into or out of the red car's way
+	@Override
+	public int update(BoardLayout layout, long parent, int parentEstimate, long child, int id, int delta)
+	{
+		if (id == 0)
+		{
+			return estimate(layout, child);
+		}
+		if (parentEstimate == 0)
+		{
+			return 0;
+		}
+		long ahead = layout.getCellsAhead(parent);
+		boolean wasAhead = (layout.getCellMask(id, layout.getOffset(parent, id)) & ahead) != 0;
+		boolean isAhead = (layout.getCellMask(id, layout.getOffset(child, id)) & ahead) != 0;
+		return parentEstimate + (isAhead ? 1 : 0) - (wasAhead ? 1 : 0);
+	}
+}
@@ -0,0 +1,450 @@
+import java.util.Arrays;
+
+// The parts of a board that never change while searching: which vehicle ids
+// are present, and each vehicle's orientation, lane and length.  A board's
+// search state is then just the offset of every vehicle along its lane,
+// packed into a long with BITS_PER_VEHICLE bits per vehicle id.
+public class BoardLayout
+{
+	public static final int BITS_PER_VEHICLE = 3;
+	private static final long OFFSET_MASK = (1L << BITS_PER_VEHICLE) - 1;
+	private static final long ROW_MASK = (1L << PuzzleManager.NUM_COLUMNS) - 1;
+
+	private int arrayLength;
+	private int[] ids;
+	private boolean[] present;
+	private boolean[] isHorizontal;
+	private int[] lane;
+	private int[] length;
+
+	// cellMasks[id][offset] has bit (row * NUM_COLUMNS + column) set for
+	// every cell the vehicle covers at that offset
+	private long[][] cellMasks;
+
+	public BoardLayout(Vehicle[] idToVehicle)
+	{
+		if (idToVehicle.length > Long.SIZE / BITS_PER_VEHICLE)
+		{
+			throw new IllegalArgumentException("Too many vehicle ids to pack into a long: " + idToVehicle.length);
+		}
+
+		arrayLength = idToVehicle.length;
+		present = new boolean[arrayLength];
+		isHorizontal = new boolean[arrayLength];
+		lane = new int[arrayLength];
+		length = new int[arrayLength];
+		cellMasks = new long[arrayLength][];
+
+		int count = 0;
+		for (int id = 0; id < arrayLength; id++)
+		{
+			Vehicle v = idToVehicle[id];
+			if (v == null)
+			{
+				continue;
+			}
+			if (v.getId() != id)
+			{
+				throw new IllegalArgumentException("Vehicle with id " + v.getId() + " stored at index " + id);
+			}
+
+			count++;
+			present[id] = true;
+			isHorizontal[id] = v.getIsHorizontal();
+			lane[id] = v.getIsHorizontal() ? v.getLeftTopRow() : v.getLeftTopColumn();
+			length[id] = v.getLength();
+
+			int numOffsets = getNumOffsets(id);
+			cellMasks[id] = new long[numOffsets];
+			for (int offset = 0; offset < numOffsets; offset++)
+			{
+				Vehicle moved = createVehicle(id, offset);
+				for (int i = 0; i < length[id]; i++)
+				{
+					int row = moved.getLeftTopRow() + (isHorizontal[id] ? 0 : i);
+					int column = moved.getLeftTopColumn() + (isHorizontal[id] ? i : 0);
+					cellMasks[id][offset] |= 1L << cellIndex(row, column);
+				}
+			}
+		}
+
+		ids = new int[count];
+		count = 0;
+		for (int id = 0; id < arrayLength; id++)
+		{
+			if (present[id])
+			{
+				ids[count++] = id;
+			}
+		}
+	}
+
+	public static int cellIndex(int row, int column)
+	{
+		return row * PuzzleManager.NUM_COLUMNS + column;
+	}
+
+	public int getArrayLength()
+	{
+		return arrayLength;
+	}
+
+	// Ids of the vehicles on this layout, in increasing order.  Do not modify.
+	public int[] getVehicleIds()
+	{
+		return ids;
+	}
+
+	public boolean hasVehicle(int id)
+	{
+		return present[id];
+	}
+
+	public boolean getIsHorizontal(int id)
+	{
+		return isHorizontal[id];
+	}
+
+	public int getLane(int id)
+	{
+		return lane[id];
+	}
+
+	public int getLength(int id)
+	{
+		return length[id];
+	}
+
+	// Number of positions the vehicle can take along its lane
+	public int getNumOffsets(int id)
+	{
+		int laneLength = isHorizontal[id] ? PuzzleManager.NUM_COLUMNS : PuzzleManager.NUM_ROWS;
+		return laneLength - length[id] + 1;
+	}
+
+	public long getCellMask(int id, int offset)
+	{
+		return cellMasks[id][offset];
+	}
+
+	public long pack(Vehicle[] idToVehicle)
+	{
+		if (!matches(idToVehicle))
+		{
+			throw new IllegalArgumentException("Vehicles do not match this layout");
+		}
+
+		long state = 0;
+		for (int id : ids)
+		{
+			Vehicle v = idToVehicle[id];
+			int offset = isHorizontal[id] ? v.getLeftTopColumn() : v.getLeftTopRow();
+			state = withOffset(state, id, offset);
+		}
+		return state;
+	}
+
+	public Vehicle[] unpack(long state)
+	{
+		Vehicle[] idToVehicle = new Vehicle[arrayLength];
+		for (int id : ids)
+		{
+			idToVehicle[id] = createVehicle(id, getOffset(state, id));
+		}
+		return idToVehicle;
+	}
+
+	// Does idToVehicle have exactly this layout (ignoring vehicle offsets)?
+	public boolean matches(Vehicle[] idToVehicle)
+	{
+		if (idToVehicle.length != arrayLength)
+		{
+			return false;
+		}
+		for (int id = 0; id < arrayLength; id++)
+		{
+			Vehicle v = idToVehicle[id];
+			if (v == null)
+			{
+				if (present[id])
+				{
+					return false;
+				}
+				continue;
+			}
+			if (!present[id] || v.getId() != id || v.getIsHorizontal() != isHorizontal[id] || v.getLength() != length[id])
+			{
+				return false;
+			}
+			if ((isHorizontal[id] ? v.getLeftTopRow() : v.getLeftTopColumn()) != lane[id])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getOffset(long state, int id)
+	{
+		return (int) ((state >>> (id * BITS_PER_VEHICLE)) & OFFSET_MASK);
+	}
+
+	public long withOffset(long state, int id, int offset)
+	{
+		int shift = id * BITS_PER_VEHICLE;
+		return (state & ~(OFFSET_MASK << shift)) | ((long) offset << shift);
+	}
+
+	public Vehicle getVehicle(long state, int id)
+	{
+		if (id >= arrayLength || !present[id])
+		{
+			return null;
+		}
+		return createVehicle(id, getOffset(state, id));
+	}
+
+	// Id of the vehicle covering the given cell, or -1 if it is empty
+	public int getVehicleId(long state, int row, int column)
+	{
+		long cell = 1L << cellIndex(row, column);
+		for (int id : ids)
+		{
+			if ((cellMasks[id][getOffset(state, id)] & cell) != 0)
+			{
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	// Bit mask of every occupied cell
+	public long getOccupancy(long state)
+	{
+		long occupied = 0;
+		for (int id : ids)
+		{
+			occupied |= cellMasks[id][getOffset(state, id)];
+		}
+		return occupied;
+	}
+
+	// Do any two vehicles cover the same cell?
+	public boolean hasOverlap(long state)
+	{
+		int covered = 0;
+		for (int id : ids)
+		{
+			covered += length[id];
+		}
+		return Long.bitCount(getOccupancy(state)) != covered;
+	}
+
+	// Can the vehicle slide one cell by delta (-1 or +1) on a board with the
+	// given occupancy?
+	public boolean canMove(long state, long occupancy, int id, int delta)
+	{
+		int offset = getOffset(state, id) + delta;
+		if (offset < 0 || offset >= cellMasks[id].length)
+		{
+			return false;
+		}
+		return (cellMasks[id][offset] & ~cellMasks[id][offset - delta] & occupancy) == 0;
+	}
+
+	// State after vehicle id slides by delta cells.  Does not check that the
+	// move is legal.
+	public long move(long state, int id, int delta)
+	{
+		return withOffset(state, id, getOffset(state, id) + delta);
+	}
+
+	// Calls visitor once per legal one-cell move, without allocating
+	public void forEachNeighbor(long state, NeighborVisitor visitor)
+	{
+		long occupancy = getOccupancy(state);
+		for (int id : ids)
+		{
+			if (canMove(state, occupancy, id, -1))
+			{
+				visitor.visitNeighbor(id, -1);
+			}
+			if (canMove(state, occupancy, id, 1))
+			{
+				visitor.visitNeighbor(id, 1);
+			}
+		}
+	}
+
+	// Calls visitor once per place each vehicle can slide to in one move,
+	// any number of cells, with delta the signed number of cells.  A slide
+	// is legal if each one-cell step of it is.
+	public void forEachSlide(long state, NeighborVisitor visitor)
+	{
+		long occupancy = getOccupancy(state);
+		for (int id : ids)
+		{
+			int offset = getOffset(state, id);
+			for (int direction = -1; direction <= 1; direction += 2)
+			{
+				for (int target = offset + direction; target >= 0 && target < cellMasks[id].length; target += direction)
+				{
+					long entered = cellMasks[id][target] & ~cellMasks[id][target - direction];
+					if ((entered & occupancy) != 0)
+					{
+						break;
+					}
+					visitor.visitNeighbor(id, target - offset);
+				}
+			}
+		}
+	}
+
+	// Every goal state: the red car at column 4 and the other vehicles
+	// anywhere they do not overlap.  Returns null if there are more than
+	// limit of them.
+	public long[] getGoalStates(int limit)
+	{
+		long[] goals = new long[16];
+		int[] count = new int[1];
+		long red = withOffset(0, 0, 4);
+		goals = addGoalStates(goals, count, limit, red, cellMasks[0][4], 1);
+		if (goals == null)
+		{
+			return null;
+		}
+		return Arrays.copyOf(goals, count[0]);
+	}
+
+	// Places vehicles ids[next...] every way that fits around occupied
+	private long[] addGoalStates(long[] goals, int[] count, int limit, long state, long occupied, int next)
+	{
+		if (next == ids.length)
+		{
+			if (count[0] == limit)
+			{
+				return null;
+			}
+			if (count[0] == goals.length)
+			{
+				goals = Arrays.copyOf(goals, goals.length * 2);
+			}
+			goals[count[0]++] = state;
+			return goals;
+		}
+
+		int id = ids[next];
+		for (int offset = 0; offset < cellMasks[id].length && goals != null; offset++)
+		{
+			if ((cellMasks[id][offset] & occupied) == 0)
+			{
+				goals = addGoalStates(goals, count, limit, withOffset(state, id, offset), occupied | cellMasks[id][offset], next + 1);
+			}
+		}
+		return goals;
+	}
+
+	public boolean isGoal(long state)
+	{
+		return getOffset(state, 0) == 4;
+	}
+
+	// Same value as PuzzleBoard.heuristicCostToGoal() for the unpacked board:
+	// the red car's distance to the exit plus the number of occupied cells
+	// in row 2 from the red car onward that do not belong to the red car
+	public int heuristicCostToGoal(long state)
+	{
+		int redColumn = getOffset(state, 0);
+		long others = getOccupancy(state) & ~cellMasks[0][redColumn];
+		long ahead = (ROW_MASK << cellIndex(2, redColumn)) & (ROW_MASK << cellIndex(2, 0));
+		return 6 - (redColumn + 2) + Long.bitCount(others & ahead);
+	}
+
+	// Cells of the red car's row between it and the exit
+	public long getCellsAhead(long state)
+	{
+		int column = getOffset(state, 0) + length[0];
+		return (ROW_MASK >>> column) << cellIndex(lane[0], column);
+	}
+
+	private Vehicle createVehicle(int id, int offset)
+	{
+		if (isHorizontal[id])
+		{
+			return new Vehicle(id, true, lane[id], offset, length[id]);
+		}
+		return new Vehicle(id, false, offset, lane[id], length[id]);
+	}
+
+	// Two longs identifying the layout outside this process, as
+	// SolutionStore needs: 8 bits per vehicle id for whether it is present,
+	// its orientation, lane and length.  Vehicle ids past the last one
+	// present are ignored, so they must all be below 16.
+	public long[] getDescriptor()
+	{
+		long[] descriptor = new long[2];
+		for (int id : ids)
+		{
+			if (id >= 2 * Long.SIZE / 8)
+			{
+				throw new IllegalStateException("No descriptor for a layout with vehicle id " + id);
+			}
+			long bits = 0x80 | (isHorizontal[id] ? 0x40 : 0) | (lane[id] << 3) | length[id];
+			descriptor[id / 8] |= bits << (8 * (id % 8));
+		}
+		return descriptor;
+	}
+
+	// The layout getDescriptor() describes, over PuzzleManager.MAX_NUM_VEHICLES
+	// vehicle ids
+	public static BoardLayout fromDescriptor(long[] descriptor)
+	{
+		Vehicle[] vehicles = new Vehicle[PuzzleManager.MAX_NUM_VEHICLES];
+		for (int id = 0; id < 2 * Long.SIZE / 8 && id < vehicles.length; id++)
+		{
+			int bits = (int) (descriptor[id / 8] >>> (8 * (id % 8))) & 0xFF;
+			if ((bits & 0x80) == 0)
+			{
+				continue;
+			}
+			boolean horizontal = (bits & 0x40) != 0;
+			int laneOfId = (bits >> 3) & 0x7;
+			int lengthOfId = bits & 0x7;
+			vehicles[id] = horizontal ? new Vehicle(id, true, laneOfId, 0, lengthOfId) : new Vehicle(id, false, 0, laneOfId, lengthOfId);
+		}
+		return new BoardLayout(vehicles);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + arrayLength;
+		result = prime * result + Arrays.hashCode(present);
+		result = prime * result + Arrays.hashCode(isHorizontal);
+		result = prime * result + Arrays.hashCode(lane);
+		result = prime * result + Arrays.hashCode(length);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass())
+		{
+			return false;
+		}
+
+		BoardLayout other = (BoardLayout) obj;
+		return arrayLength == other.arrayLength &&
+				Arrays.equals(present, other.present) &&
+				Arrays.equals(isHorizontal, other.isHorizontal) &&
+				Arrays.equals(lane, other.lane) &&
+				Arrays.equals(length, other.length);
+	}
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ *  The <tt>BucketPQ</tt> class is a min priority queue of int entries (such
+ *  as StateTable entry indexes) whose priorities are small non-negative
+ *  integers, as A* f-costs are.  Each priority has its own bucket, a doubly
+ *  linked list threaded through per-entry arrays, so no comparisons are
+ *  made and nothing is allocated once the arrays have grown.
+ *  <p>
+ *  <em>insert</em>, <em>contains</em> and <em>updateKey</em> take constant
+ *  time.  <em>delMin</em> takes amortized constant time: it scans forward
+ *  from the smallest bucket that may be non-empty, and that only moves
+ *  backward when a smaller priority is inserted.
+ *  <p>
+ *  Optionally, entries with the same f are ordered by g, largest or
+ *  smallest first, by giving each (f, g) pair its own bucket.  This
+ *  requires 0 <= g <= f, which holds whenever the heuristic is
+ *  non-negative.  Within a bucket, the most recently inserted entry comes
+ *  out first.
+ */
+public class BucketPQ
+{
+	private static final int NONE = -1;
+
+	private boolean tieBreakByCost;
+	private boolean higherCostFirst;
+
+	// Per-entry links, and the bucket each entry is in (NONE if not queued)
+	private int[] next;
+	private int[] prev;
+	private int[] bucketOf;
+
+	// First entry in each bucket, or NONE
+	private int[] heads;
+
+	private int minBucket;
+	private int N;
+
+	/**
+	 * Initializes an empty priority queue with no tie-breaking.
+	 */
+	public BucketPQ()
+	{
+		this(false, false);
+	}
+
+	/**
+	 * Initializes an empty priority queue.
+	 * @param tieBreakByCostP if true, entries with equal f are ordered by g
+	 * @param higherCostFirstP if true, larger g comes out first; otherwise
+	 *        smaller g does
+	 */
+	public BucketPQ(boolean tieBreakByCostP, boolean higherCostFirstP)
+	{
+		tieBreakByCost = tieBreakByCostP;
+		higherCostFirst = higherCostFirstP;
+		next = new int[16];
+		prev = new int[16];
+		bucketOf = new int[16];
+		Arrays.fill(bucketOf, NONE);
+		heads = new int[16];
+		Arrays.fill(heads, NONE);
+		minBucket = 0;
+		N = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return N == 0;
+	}
+
+	public int size()
+	{
+		return N;
+	}
+
+	public boolean contains(int entry)
+	{
+		return entry < bucketOf.length && bucketOf[entry] != NONE;
+	}
+
+	/**
+	 * Adds an entry that is not already on the queue.
+	 * @param entry non-negative entry id
+	 * @param f the priority
+	 * @param g the tie-breaking cost, used only if tie-breaking is enabled
+	 */
+	public void insert(int entry, int f, int g)
+	{
+		if (contains(entry))
+		{
+			throw new IllegalArgumentException("Entry " + entry + " is already on the queue");
+		}
+		if (entry >= bucketOf.length)
+		{
+			growEntries(entry);
+		}
+
+		int bucket = bucketIndex(f, g);
+		if (bucket >= heads.length)
+		{
+			int oldLength = heads.length;
+			heads = Arrays.copyOf(heads, Math.max(bucket + 1, 2 * oldLength));
+			Arrays.fill(heads, oldLength, heads.length, NONE);
+		}
+
+		bucketOf[entry] = bucket;
+		prev[entry] = NONE;
+		next[entry] = heads[bucket];
+		if (heads[bucket] != NONE)
+		{
+			prev[heads[bucket]] = entry;
+		}
+		heads[bucket] = entry;
+
+		if (bucket < minBucket)
+		{
+			minBucket = bucket;
+		}
+		N++;
+	}
+
+	/**
+	 * Moves an entry that is already on the queue to a new priority.
+	 */
+	public void updateKey(int entry, int f, int g)
+	{
+		remove(entry);
+		insert(entry, f, g);
+	}
+
+	/**
+	 * Removes and returns an entry with the smallest priority.
+	 * @throws java.util.NoSuchElementException if the queue is empty
+	 */
+	public int delMin()
+	{
+		if (isEmpty())
+		{
+			throw new NoSuchElementException("Priority queue underflow");
+		}
+		while (heads[minBucket] == NONE)
+		{
+			minBucket++;
+		}
+		int entry = heads[minBucket];
+		remove(entry);
+		return entry;
+	}
+
+	private void remove(int entry)
+	{
+		if (!contains(entry))
+		{
+			throw new NoSuchElementException("Entry " + entry + " is not on the queue");
+		}
+
+		int bucket = bucketOf[entry];
+		if (prev[entry] != NONE)
+		{
+			next[prev[entry]] = next[entry];
+		}
+		else
+		{
+			heads[bucket] = next[entry];
+		}
+		if (next[entry] != NONE)
+		{
+			prev[next[entry]] = prev[entry];
+		}
+		bucketOf[entry] = NONE;
+		N--;
+	}
+
+	// Buckets for (f, g) with g from f down to 0 (or 0 up to f) are
+	// consecutive, and come after every bucket for a smaller f
+	private int bucketIndex(int f, int g)
+	{
+		if (f < 0)
+		{
+			throw new IllegalArgumentException("Negative priority " + f);
+		}
+		if (!tieBreakByCost)
+		{
+			return f;
+		}
+		g = Math.max(0, Math.min(g, f));
+		return f * (f + 1) / 2 + (higherCostFirst ? f - g : g);
+	}
+
+	private void growEntries(int entry)
+	{
+		int oldLength = bucketOf.length;
+		int newLength = Math.max(entry + 1, 2 * oldLength);
+		next = Arrays.copyOf(next, newLength);
+		prev = Arrays.copyOf(prev, newLength);
+		bucketOf = Arrays.copyOf(bucketOf, newLength);
+		Arrays.fill(bucketOf, oldLength, newLength, NONE);
+	}
+}
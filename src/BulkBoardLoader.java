@@ -0,0 +1,325 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Reads boards from a corpus file holding many of them: each board is in
+// the board file format, one "h|v row column length id" line per vehicle,
+// and boards are separated by one or more blank lines.  The file is read
+// through a buffered channel and parsed byte by byte, with no Scanner,
+// String or regular expression per line, so loading keeps up with solving.
+//
+// Anything after the id on a vehicle line is ignored.
+//
+// Boards come out in file order, as Vehicle arrays indexed by id or as
+// packed boards.  Consecutive packed boards with the same layout share one
+// BoardLayout, as generated corpora usually list many boards per layout.
+public class BulkBoardLoader implements Closeable
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// null when parsing a board already in memory, which buffer then holds
+	private ReadableByteChannel channel;
+	private ByteBuffer buffer;
+
+	// Line being read, for error messages
+	private int line = 1;
+
+	// Byte after the current one, or -1 at the end of the input; the
+	// parser looks one byte ahead
+	private int peeked;
+
+	private BoardLayout lastLayout;
+
+	public BulkBoardLoader(File file) throws IOException
+	{
+		this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+	}
+
+	public BulkBoardLoader(ReadableByteChannel channelP) throws IOException
+	{
+		channel = channelP;
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.flip();
+		peeked = read();
+	}
+
+	// Reads straight from bytes, with no channel or direct buffer
+	private BulkBoardLoader(byte[] bytes) throws IOException
+	{
+		buffer = ByteBuffer.wrap(bytes);
+		peeked = read();
+	}
+
+	// Parses one board in the board file format.  Blank lines are ignored,
+	// as is everything but the vehicle lines.
+	public static Vehicle[] parseBoard(String text)
+	{
+		try (BulkBoardLoader loader = new BulkBoardLoader(text.getBytes(StandardCharsets.ISO_8859_1)))
+		{
+			Vehicle[] vehicles = new Vehicle[PuzzleManager.MAX_NUM_VEHICLES];
+			while (loader.hasNext())
+			{
+				loader.readBoard(vehicles);
+			}
+			return vehicles;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Is there another board?  Skips any blank lines before it.
+	public boolean hasNext() throws IOException
+	{
+		while (peeked == ' ' || peeked == '\t' || peeked == '\r' || peeked == '\n')
+		{
+			next();
+		}
+		return peeked != -1;
+	}
+
+	// The next board's vehicles, indexed by id.  Throws
+	// IllegalArgumentException, with the line number, if it is malformed.
+	public Vehicle[] nextVehicles() throws IOException
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException("No more boards");
+		}
+		return readBoard(new Vehicle[PuzzleManager.MAX_NUM_VEHICLES]);
+	}
+
+	// The next board, packed
+	public PuzzleBoard nextPackedBoard() throws IOException
+	{
+		Vehicle[] vehicles = nextVehicles();
+		if (lastLayout == null || !lastLayout.matches(vehicles))
+		{
+			lastLayout = new BoardLayout(vehicles);
+		}
+		return new PuzzleBoard(lastLayout, lastLayout.pack(vehicles));
+	}
+
+	// Every remaining board, read as the stream is consumed.  Closing the
+	// stream closes the loader.
+	public Stream<Vehicle[]> vehicleArrays()
+	{
+		return stream(new BoardReader<Vehicle[]>()
+		{
+			public Vehicle[] read() throws IOException
+			{
+				return nextVehicles();
+			}
+		});
+	}
+
+	public Stream<PuzzleBoard> packedBoards()
+	{
+		return stream(new BoardReader<PuzzleBoard>()
+		{
+			public PuzzleBoard read() throws IOException
+			{
+				return nextPackedBoard();
+			}
+		});
+	}
+
+	private interface BoardReader<T>
+	{
+		T read() throws IOException;
+	}
+
+	private <T> Stream<T> stream(final BoardReader<T> reader)
+	{
+		Iterator<T> boards = new Iterator<T>()
+		{
+			public boolean hasNext()
+			{
+				try
+				{
+					return BulkBoardLoader.this.hasNext();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			public T next()
+			{
+				try
+				{
+					return reader.read();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		Stream<T> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(boards,
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+		return stream.onClose(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					close();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	public void close() throws IOException
+	{
+		if (channel != null)
+		{
+			channel.close();
+		}
+	}
+
+	// Reads vehicle lines into vehicles up to a blank line or the end of
+	// the input
+	private Vehicle[] readBoard(Vehicle[] vehicles) throws IOException
+	{
+		while (true)
+		{
+			skipSpaces();
+			if (peeked == -1)
+			{
+				return vehicles;
+			}
+			if (peeked == '\r' || peeked == '\n')
+			{
+				// Blank line
+				endLine();
+				return vehicles;
+			}
+
+			boolean isHorizontal = (peeked == 'h');
+			while (peeked != -1 && !isSpace(peeked) && peeked != '\r' && peeked != '\n')
+			{
+				next();
+			}
+			int row = readInt();
+			int column = readInt();
+			int length = readInt();
+			int id = readInt();
+			while (peeked != -1 && peeked != '\r' && peeked != '\n')
+			{
+				next();
+			}
+			if (peeked != -1)
+			{
+				endLine();
+			}
+
+			if (id < 0 || id >= vehicles.length)
+			{
+				throw error("vehicle id " + id + " is not between 0 and " + (vehicles.length - 1));
+			}
+			vehicles[id] = new Vehicle(id, isHorizontal, row, column, length);
+		}
+	}
+
+	private int readInt() throws IOException
+	{
+		skipSpaces();
+		boolean negative = (peeked == '-');
+		if (negative)
+		{
+			next();
+		}
+		if (peeked < '0' || peeked > '9')
+		{
+			throw error("expected a number");
+		}
+		int value = 0;
+		while (peeked >= '0' && peeked <= '9')
+		{
+			value = value * 10 + (next() - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	// Consumes a line ending, "\n" or "\r\n"
+	private void endLine() throws IOException
+	{
+		if (peeked == '\r')
+		{
+			next();
+		}
+		if (peeked != '\n')
+		{
+			throw error("unexpected character '" + (char) peeked + "'");
+		}
+		next();
+	}
+
+	private void skipSpaces() throws IOException
+	{
+		while (isSpace(peeked))
+		{
+			next();
+		}
+	}
+
+	private static boolean isSpace(int b)
+	{
+		return b == ' ' || b == '\t';
+	}
+
+	// Consumes and returns the peeked byte
+	private int next() throws IOException
+	{
+		int b = peeked;
+		if (b == '\n')
+		{
+			line++;
+		}
+		peeked = read();
+		return b;
+	}
+
+	private int read() throws IOException
+	{
+		while (!buffer.hasRemaining())
+		{
+			if (channel == null)
+			{
+				return -1;
+			}
+			buffer.clear();
+			if (channel.read(buffer) == -1)
+			{
+				buffer.flip();
+				return -1;
+			}
+			buffer.flip();
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	private IllegalArgumentException error(String message)
+	{
+		return new IllegalArgumentException("Line " + line + ": " + message);
+	}
+}
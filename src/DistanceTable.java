@@ -0,0 +1,329 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// Exact distance to the goal of every state of a layout that can reach it,
+// found by one breadth-first search backward from all of the layout's goal
+// states.  Moves between non-overlapping states can always be undone, so
+// the backward search uses the same neighbors as a forward one.  After
+// that, the distance from any state is a single lookup, and a shortest
+// path is found by repeatedly moving to a neighbor one step closer.
+//
+// States are kept in an open-addressing table of bare packed keys, hashed
+// on ZobristKeys, with one byte of distance per slot: 9 bytes a slot, with
+// the slots kept at most three quarters full.  During the search each
+// neighbor's hash follows from its parent's with two XORs.
+//
+// Tables are cached per layout, since a layout is solved again every time
+// the user edits its board in PuzzleManager.  Layouts with too many states
+// are not tabled; forLayout returns null for them.
+public class DistanceTable
+{
+	// Most states tabled for one layout
+	public static final int MAX_STATES = 1 << 21;
+
+	// Distance for states from which the goal cannot be reached
+	public static final int UNREACHABLE = -1;
+
+	private static final int CACHE_SIZE = 4;
+
+	// Key of empty slots.  Every vehicle offset is below 7, so no packed
+	// state has all its bits set.
+	private static final long EMPTY = -1L;
+
+	// Largest distance a byte holds
+	private static final int MAX_DISTANCE = 0xff;
+
+	// Layouts map to their tables once built, or to null tables once they
+	// are found to be too large
+	private static final Map<BoardLayout, Cached> cache = new LinkedHashMap<BoardLayout, Cached>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BoardLayout, Cached> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private static class Cached
+	{
+		private boolean built;
+		private DistanceTable distances;
+	}
+
+	private BoardLayout layout;
+
+	// Linear probing over slots: each slot's key, or EMPTY, and its
+	// distance as an unsigned byte
+	private long[] keys;
+	private byte[] distances;
+	private int mask;
+	private int size;
+	private int maxDistance = UNREACHABLE;
+
+	// The cached table for layout, building it if needed, or null if the
+	// layout has more than MAX_STATES states that can reach the goal
+	public static DistanceTable forLayout(BoardLayout layout)
+	{
+		Cached cached;
+		synchronized (cache)
+		{
+			cached = cache.get(layout);
+			if (cached == null)
+			{
+				cached = new Cached();
+				cache.put(layout, cached);
+			}
+		}
+
+		// Built outside the cache lock, so a slow build only holds up other
+		// solves of the same layout
+		synchronized (cached)
+		{
+			if (!cached.built)
+			{
+				try
+				{
+					cached.distances = new DistanceTable(layout);
+				}
+				catch (IllegalStateException e)
+				{
+					// Too large; remembered as null
+				}
+				cached.built = true;
+			}
+			return cached.distances;
+		}
+	}
+
+	// Throws IllegalStateException if the layout has more than MAX_STATES
+	// states that can reach the goal
+	public DistanceTable(BoardLayout layoutP)
+	{
+		layout = layoutP;
+		long[] goals = layout.getGoalStates(MAX_STATES);
+		if (goals == null)
+		{
+			throw new IllegalStateException("More than " + MAX_STATES + " goal states");
+		}
+
+		allocate(goals.length * 4);
+		Expander expander = new Expander();
+		expander.queue = new long[Math.max(goals.length * 4, 16)];
+		for (long goal : goals)
+		{
+			if (insert(goal, hash(goal), 0))
+			{
+				expander.queue[expander.tail++] = goal;
+			}
+		}
+
+		// The queue holds states in order of distance, so the next level
+		// starts once the current one is used up
+		int levelEnd = expander.tail;
+		for (int head = 0; head < expander.tail; head++)
+		{
+			if (head == levelEnd)
+			{
+				expander.distance++;
+				levelEnd = expander.tail;
+			}
+			expander.state = expander.queue[head];
+			expander.key = ZobristKeys.key(layout, expander.state);
+			layout.forEachNeighbor(expander.state, expander);
+		}
+		maxDistance = (size == 0) ? UNREACHABLE : expander.distance;
+	}
+
+	private class Expander implements NeighborVisitor
+	{
+		private long[] queue;
+		private int tail;
+		private long state;
+		private long key;
+
+		// Distance of state
+		private int distance;
+
+		public void visitNeighbor(int id, int delta)
+		{
+			long neighbor = layout.move(state, id, delta);
+			int hash = ZobristKeys.hash(ZobristKeys.move(layout, key, state, id, delta));
+			if (!insert(neighbor, hash, distance + 1))
+			{
+				return;
+			}
+			if (tail == queue.length)
+			{
+				queue = Arrays.copyOf(queue, queue.length * 2);
+			}
+			queue[tail++] = neighbor;
+		}
+	}
+
+	public BoardLayout getLayout()
+	{
+		return layout;
+	}
+
+	// States that can reach the goal
+	public int size()
+	{
+		return size;
+	}
+
+	// Distance of the states furthest from the goal, or UNREACHABLE if no
+	// state can reach it
+	public int getMaxDistance()
+	{
+		return maxDistance;
+	}
+
+	// Up to limit states exactly distance moves from the goal, always the
+	// same ones for the same layout
+	public long[] getStatesAt(int distance, int limit)
+	{
+		long[] states = new long[Math.min(limit, size)];
+		int count = 0;
+		for (int slot = 0; slot < keys.length && count < states.length; slot++)
+		{
+			if (keys[slot] != EMPTY && (distances[slot] & 0xff) == distance)
+			{
+				states[count++] = keys[slot];
+			}
+		}
+		return Arrays.copyOf(states, count);
+	}
+
+	private int hash(long state)
+	{
+		return ZobristKeys.hash(ZobristKeys.key(layout, state));
+	}
+
+	// At least expectedSize empty slots
+	private void allocate(int expectedSize)
+	{
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 16) - 1) << 1;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		distances = new byte[capacity];
+		mask = capacity - 1;
+	}
+
+	// Slot holding state, or the empty slot where it would go
+	private int slotOf(long state, int hash)
+	{
+		int slot = hash & mask;
+		while (keys[slot] != EMPTY && keys[slot] != state)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// Adds state at distance unless it is already in the table, and returns
+	// whether it was added.  Throws IllegalStateException if that would make
+	// more than MAX_STATES states or a distance that does not fit a byte.
+	private boolean insert(long state, int hash, int distance)
+	{
+		int slot = slotOf(state, hash);
+		if (keys[slot] != EMPTY)
+		{
+			return false;
+		}
+		if (size == MAX_STATES)
+		{
+			throw new IllegalStateException("More than " + MAX_STATES + " states");
+		}
+		if (distance > MAX_DISTANCE)
+		{
+			throw new IllegalStateException("States more than " + MAX_DISTANCE + " moves from the goal");
+		}
+		keys[slot] = state;
+		distances[slot] = (byte) distance;
+		size++;
+		if (size * 4 > keys.length * 3)
+		{
+			grow();
+		}
+		return true;
+	}
+
+	// Doubles the slots, rehashing every state from its Zobrist key
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		byte[] oldDistances = distances;
+		allocate(keys.length * 2);
+		for (int slot = 0; slot < oldKeys.length; slot++)
+		{
+			if (oldKeys[slot] != EMPTY)
+			{
+				int newSlot = slotOf(oldKeys[slot], hash(oldKeys[slot]));
+				keys[newSlot] = oldKeys[slot];
+				distances[newSlot] = oldDistances[slot];
+			}
+		}
+	}
+
+	// Moves from state to the nearest goal, or UNREACHABLE.  States with
+	// overlapping vehicles are never tabled, so they are UNREACHABLE too.
+	public int distance(long state)
+	{
+		int slot = slotOf(state, hash(state));
+		return (keys[slot] == EMPTY) ? UNREACHABLE : distances[slot] & 0xff;
+	}
+
+	// A neighbor of state one move closer to the goal.  Throws
+	// NoSuchElementException if state is a goal or UNREACHABLE.
+	public long nextState(long state)
+	{
+		int distance = distance(state);
+		if (distance == UNREACHABLE || distance == 0)
+		{
+			throw new NoSuchElementException("No next move from a state at distance " + distance);
+		}
+		Descender descender = new Descender();
+		descender.state = state;
+		descender.target = distance - 1;
+		layout.forEachNeighbor(state, descender);
+		return descender.next;
+	}
+
+	// Every state from start to a nearest goal, both included.  Throws
+	// NoSuchElementException if start is UNREACHABLE.
+	public long[] getPath(long start)
+	{
+		int distance = distance(start);
+		if (distance == UNREACHABLE)
+		{
+			throw new NoSuchElementException("No solution");
+		}
+		long[] path = new long[distance + 1];
+		path[0] = start;
+		for (int i = 1; i <= distance; i++)
+		{
+			path[i] = nextState(path[i - 1]);
+		}
+		return path;
+	}
+
+	private class Descender implements NeighborVisitor
+	{
+		private long state;
+		private int target;
+		private long next;
+		private boolean found;
+
+		public void visitNeighbor(int id, int delta)
+		{
+			long neighbor = layout.move(state, id, delta);
+			if (!found && distance(neighbor) == target)
+			{
+				next = neighbor;
+				found = true;
+			}
+		}
+	}
+}
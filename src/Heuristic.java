@@ -0,0 +1,22 @@
+// Lower bound on the number of one-cell moves needed to get from a packed
+// state on the given layout to any goal state.  Solver is only guaranteed
+// to find a shortest path if the bound is never too high.
+public interface Heuristic
+{
+	// Estimate for states that can never reach the goal.  Any value is a
+	// valid bound for them; this one keeps f-costs small enough for
+	// BucketPQ.
+	int DEAD_END = 100;
+	
+	int estimate(BoardLayout layout, long state);
+	
+	// Estimate for child, reached from parent by moving vehicle id by delta
+	// cells, given parent's estimate.  Neither state may have overlapping
+	// vehicles.  Heuristics that can tell how one move changes their
+	// estimate override this, so expanding a state does not rescore each
+	// of its neighbors from scratch.
+	default int update(BoardLayout layout, long parent, int parentEstimate, long child, int id, int delta)
+	{
+		return estimate(layout, child);
+	}
+}
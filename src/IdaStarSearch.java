@@ -0,0 +1,264 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// Iterative-deepening A*: repeated depth-first searches that cut off any
+// state whose f-cost is over a bound, raising the bound to the smallest
+// f-cost cut off until a goal is reached.  Only the current path is kept,
+// so memory grows with the solution depth rather than with the number of
+// states explored.  With an admissible heuristic the first goal reached is
+// at the least cost.
+//
+// States already on the path are skipped.  An optional transposition table
+// of fixed size also remembers states seen during the current iteration;
+// reaching one again at no lower cost is skipped, since everything under it
+// has already been searched with at least as much of the bound left.  Each
+// state may go in any of a few neighboring slots; if they are all taken,
+// the state in the first is forgotten.
+//
+// If an iteration fails without the table forgetting anything, and every
+// neighbor of the states it searched was searched too, those states are
+// all that can be reached and the board has no solution.  Without the
+// table, or with one too small to hold every reachable state, an
+// unsolvable board may take a very long time to report.
+public class IdaStarSearch
+{
+	// Slots a state may be stored in
+	private static final int WAYS = 4;
+
+	private BoardLayout layout;
+	private Heuristic heuristic;
+
+	// States on the current path, and the neighbors of each still to try
+	private long[] path;
+	private long[][] children;
+	private int length;
+
+	private int bound;
+	private int nextBound;
+	private int nodesExpanded;
+
+	// Transposition table: state, cost and iteration for each slot; an
+	// iteration of 0 marks an empty slot
+	private long[] tableKeys;
+	private int[] tableCosts;
+	private int[] tableIterations;
+	private int tableMask;
+	private int iteration;
+	private boolean forgotten;
+
+	private ChildCollector collector = new ChildCollector();
+	private ClosureCheck closureCheck = new ClosureCheck();
+
+	// tableSize is rounded down to a power of two; 0 disables the table
+	public IdaStarSearch(BoardLayout layoutP, Heuristic heuristicP, long start, int tableSize)
+	{
+		if (tableSize < 0)
+		{
+			throw new IllegalArgumentException("Negative transposition table size " + tableSize);
+		}
+		layout = layoutP;
+		heuristic = heuristicP;
+		path = new long[64];
+		children = new long[64][];
+		if (tableSize > 0)
+		{
+			int capacity = Integer.highestOneBit(tableSize);
+			tableKeys = new long[capacity];
+			tableCosts = new int[capacity];
+			tableIterations = new int[capacity];
+			tableMask = capacity - 1;
+		}
+
+		path[0] = start;
+		bound = heuristic.estimate(layout, start);
+		while (true)
+		{
+			nextBound = Integer.MAX_VALUE;
+			iteration++;
+			forgotten = false;
+			if (search(0))
+			{
+				return;
+			}
+			if (nextBound == Integer.MAX_VALUE || (tableKeys != null && !forgotten && searchedAllReachable()))
+			{
+				throw new NoSuchElementException("No solution");
+			}
+			bound = nextBound;
+		}
+	}
+
+	private boolean search(int depth)
+	{
+		long state = path[depth];
+		int f = depth + heuristic.estimate(layout, state);
+		if (f > bound)
+		{
+			nextBound = Math.min(nextBound, f);
+			return false;
+		}
+		if (layout.isGoal(state))
+		{
+			length = depth;
+			return true;
+		}
+		if (!recordVisit(state, depth))
+		{
+			return false;
+		}
+
+		nodesExpanded++;
+		if (depth + 1 == path.length)
+		{
+			path = Arrays.copyOf(path, path.length * 2);
+			children = Arrays.copyOf(children, children.length * 2);
+		}
+		if (children[depth] == null)
+		{
+			children[depth] = new long[2 * layout.getVehicleIds().length];
+		}
+		collector.state = state;
+		collector.children = children[depth];
+		collector.count = 0;
+		layout.forEachNeighbor(state, collector);
+
+		int count = collector.count;
+		for (int i = 0; i < count; i++)
+		{
+			long child = children[depth][i];
+			if (isOnPath(child, depth))
+			{
+				continue;
+			}
+			path[depth + 1] = child;
+			if (search(depth + 1))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isOnPath(long state, int depth)
+	{
+		for (int i = depth - 1; i >= 0; i--)
+		{
+			if (path[i] == state)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Returns false if state was already searched this iteration at no
+	// greater cost
+	private boolean recordVisit(long state, int cost)
+	{
+		if (tableKeys == null)
+		{
+			return true;
+		}
+		int first = hash(state) & tableMask;
+		int slot = first;
+		for (int way = 0; ; way++, slot = (slot + 1) & tableMask)
+		{
+			if (way == WAYS)
+			{
+				slot = first;
+				forgotten = true;
+				break;
+			}
+			if (tableIterations[slot] != iteration)
+			{
+				break;
+			}
+			if (tableKeys[slot] == state)
+			{
+				if (tableCosts[slot] <= cost)
+				{
+					return false;
+				}
+				break;
+			}
+		}
+		tableKeys[slot] = state;
+		tableCosts[slot] = cost;
+		tableIterations[slot] = iteration;
+		return true;
+	}
+
+	private boolean isInTable(long state)
+	{
+		int slot = hash(state) & tableMask;
+		for (int way = 0; way < WAYS; way++, slot = (slot + 1) & tableMask)
+		{
+			if (tableIterations[slot] == iteration && tableKeys[slot] == state)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Is every neighbor of every state searched this iteration also in the
+	// table?  Only meaningful if nothing was forgotten.
+	private boolean searchedAllReachable()
+	{
+		closureCheck.closed = true;
+		for (int slot = 0; slot < tableKeys.length && closureCheck.closed; slot++)
+		{
+			if (tableIterations[slot] == iteration)
+			{
+				closureCheck.state = tableKeys[slot];
+				layout.forEachNeighbor(closureCheck.state, closureCheck);
+			}
+		}
+		return closureCheck.closed;
+	}
+
+	private static int hash(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private class ChildCollector implements NeighborVisitor
+	{
+		private long state;
+		private long[] children;
+		private int count;
+
+		public void visitNeighbor(int id, int delta)
+		{
+			children[count++] = layout.move(state, id, delta);
+		}
+	}
+
+	private class ClosureCheck implements NeighborVisitor
+	{
+		private long state;
+		private boolean closed;
+
+		public void visitNeighbor(int id, int delta)
+		{
+			if (!isInTable(layout.move(state, id, delta)))
+			{
+				closed = false;
+			}
+		}
+	}
+
+	public int getNodesExpanded()
+	{
+		return nodesExpanded;
+	}
+
+	// Every state from the start to the goal, both included
+	public long[] getPath()
+	{
+		return Arrays.copyOf(path, length + 1);
+	}
+}
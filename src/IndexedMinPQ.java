@@ -0,0 +1,340 @@
+/*************************************************************************
+ *  Generic min priority queue implementation with a d-ary heap, where
+ *  insert hands back an int handle for later updates.
+ *  Can be used with a comparator instead of the natural order.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ *  The <tt>IndexedMinPQ</tt> class is a variant of <tt>UpdateableMinPQ</tt>
+ *  that finds keys by handle instead of by hashing.  <em>insert</em> returns
+ *  an int handle, which the caller keeps and passes to <em>updateKey</em>
+ *  or <em>decreaseKey</em>.  Positions are tracked in an int array indexed
+ *  by handle, so no operation hashes, boxes or allocates once the arrays
+ *  have grown.
+ *  <p>
+ *  This implementation uses a d-ary heap with a configurable arity.  Wider
+ *  heaps are shallower, so <em>insert</em> and <em>decreaseKey</em> do fewer
+ *  swaps, and each node's children sit next to each other in memory;
+ *  4 and 8 are good choices.  The <em>insert</em>, <em>delete-the-minimum</em>
+ *  and update operations take logarithmic amortized time.
+ *  The <em>min</em>, <em>size</em>, and <em>is-empty</em> operations take
+ *  constant time.
+ *  <p>
+ *  A handle stays valid until its key is removed by <em>delMin</em>, after
+ *  which it may be handed out again by a later <em>insert</em>.
+ */
+public class IndexedMinPQ<Key> {
+    private static final int DEFAULT_ARITY = 4;
+
+    private static PQHook hook;                 // For testing purposes
+    private int d;                              // arity of the heap
+    private int[] heap;                         // handles at indices 0 to N-1
+    private int[] handleToIndex;                // index in heap, or -1 if free
+    private Key[] keys;                         // key for each handle
+    private int[] freeHandles;                  // stack of released handles
+    private int numFree;
+    private int numHandles;                     // handles ever handed out
+    private int N;                              // number of items on priority queue
+    private Comparator<Key> comparator;         // optional comparator
+
+
+    public static void registerHook(PQHook hookP)
+    {
+        if (hook != null)
+        {
+            throw new UnsupportedOperationException("registerHook has been called outside of the tests.  Student code should not call registerHook");
+        }
+        hook = hookP;
+    }
+
+    public static void unregisterHook()
+    {
+        hook = null;
+    }
+
+    /**
+     * Initializes an empty 4-ary priority queue.
+     */
+    public IndexedMinPQ() {
+        this(DEFAULT_ARITY, null);
+    }
+
+    /**
+     * Initializes an empty priority queue with the given arity.
+     * @param arity the number of children per heap node, at least 2
+     */
+    public IndexedMinPQ(int arity) {
+        this(arity, null);
+    }
+
+    /**
+     * Initializes an empty priority queue with the given arity,
+     * using the given comparator.
+     * @param arity the number of children per heap node, at least 2
+     * @param comparator the order to use when comparing keys, or null for
+     *        the natural order
+     */
+    public IndexedMinPQ(int arity, Comparator<Key> comparator) {
+        if (arity < 2) throw new IllegalArgumentException("Heap arity must be at least 2: " + arity);
+        d = arity;
+        this.comparator = comparator;
+        heap = new int[16];
+        handleToIndex = new int[16];
+        @SuppressWarnings("unchecked")
+        Key[] initialKeys = (Key[]) new Object[16];
+        keys = initialKeys;
+        freeHandles = new int[16];
+        numFree = 0;
+        numHandles = 0;
+        N = 0;
+    }
+
+    /**
+     * Is the priority queue empty?
+     * @return true if the priority queue is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    /**
+     * Returns the number of keys on the priority queue.
+     * @return the number of keys on the priority queue
+     */
+    public int size() {
+        return N;
+    }
+
+    /**
+     * Is the handle currently assigned to a key on the queue?
+     */
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < numHandles && handleToIndex[handle] != -1;
+    }
+
+    /**
+     * Returns the key currently stored under the handle.
+     * @throws java.util.NoSuchElementException if the handle is not in use
+     */
+    public Key keyOf(int handle) {
+        checkHandle(handle);
+        return keys[handle];
+    }
+
+    /**
+     * Returns a smallest key on the priority queue.
+     * @return a smallest key on the priority queue
+     * @throws java.util.NoSuchElementException if priority queue is empty
+     */
+    public Key min() {
+        if (isEmpty()) throw new NoSuchElementException("Priority queue underflow");
+        return keys[heap[0]];
+    }
+
+    /**
+     * Adds a new key to the priority queue.
+     * @param x the key to add to the priority queue
+     * @return the handle to pass to updateKey or decreaseKey for this key
+     */
+    public int insert(Key x) {
+        if (hook != null)
+        {
+            hook.onEnqueue(x);
+        }
+
+        int handle;
+        if (numFree > 0)
+        {
+            handle = freeHandles[--numFree];
+        }
+        else
+        {
+            if (numHandles == keys.length)
+            {
+                resize(2 * keys.length);
+            }
+            handle = numHandles++;
+        }
+
+        keys[handle] = x;
+        heap[N] = handle;
+        handleToIndex[handle] = N;
+        N++;
+        swim(N - 1);
+        assert isMinHeap();
+        return handle;
+    }
+
+    /**
+     * Removes and returns a smallest key on the priority queue.  Its handle
+     * is released.
+     * @return a smallest key on the priority queue
+     * @throws java.util.NoSuchElementException if the priority queue is empty
+     */
+    public Key delMin() {
+        if (isEmpty())
+        {
+            throw new NoSuchElementException("Priority queue underflow");
+        }
+        int handle = heap[0];
+        Key min = keys[handle];
+        if (hook != null)
+        {
+            hook.onDequeue(min);
+        }
+
+        N--;
+        if (N > 0)
+        {
+            heap[0] = heap[N];
+            handleToIndex[heap[0]] = 0;
+            sink(0);
+        }
+
+        // avoid loitering and help with garbage collection
+        keys[handle] = null;
+        handleToIndex[handle] = -1;
+        freeHandles[numFree++] = handle;
+        assert isMinHeap();
+        return min;
+    }
+
+    /**
+     * Overwrites the key stored under the handle with newKey, which may be
+     * smaller or larger, and restores the heap order.
+     * @param handle handle returned by insert
+     * @param newKey New key to store in place of the old one
+     * @throws java.util.NoSuchElementException if the handle is not in use
+     */
+    public void updateKey(int handle, Key newKey) {
+        checkHandle(handle);
+        if (hook != null)
+        {
+            hook.onUpdate(keys[handle], newKey);
+        }
+        keys[handle] = newKey;
+        swim(handleToIndex[handle]);
+        sink(handleToIndex[handle]);
+        assert isMinHeap();
+    }
+
+    /**
+     * Like updateKey, for a newKey no greater than the old one.  Only
+     * moves the key toward the root.
+     * @throws java.lang.IllegalArgumentException if newKey is greater
+     */
+    public void decreaseKey(int handle, Key newKey) {
+        checkHandle(handle);
+        if (compare(newKey, keys[handle]) > 0)
+        {
+            throw new IllegalArgumentException("decreaseKey called with a greater key");
+        }
+        if (hook != null)
+        {
+            hook.onUpdate(keys[handle], newKey);
+        }
+        keys[handle] = newKey;
+        swim(handleToIndex[handle]);
+        assert isMinHeap();
+    }
+
+    private void checkHandle(int handle) {
+        if (!contains(handle))
+        {
+            throw new NoSuchElementException("No key stored under handle " + handle);
+        }
+    }
+
+    // helper function to grow the per-handle arrays
+    private void resize(int capacity) {
+        assert capacity > numHandles;
+        heap = Arrays.copyOf(heap, capacity);
+        handleToIndex = Arrays.copyOf(handleToIndex, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        freeHandles = Arrays.copyOf(freeHandles, capacity);
+    }
+
+
+   /***********************************************************************
+    * Helper functions to restore the heap invariant.
+    **********************************************************************/
+
+    private void swim(int k) {
+        int handle = heap[k];
+        Key key = keys[handle];
+        while (k > 0) {
+            int parent = (k - 1) / d;
+            if (compare(keys[heap[parent]], key) <= 0) break;
+            place(heap[parent], k);
+            k = parent;
+        }
+        place(handle, k);
+    }
+
+    private void sink(int k) {
+        int handle = heap[k];
+        Key key = keys[handle];
+        while (true) {
+            int first = d * k + 1;
+            if (first >= N) break;
+            int last = Math.min(first + d, N);
+            int smallest = first;
+            for (int j = first + 1; j < last; j++)
+            {
+                if (compare(keys[heap[j]], keys[heap[smallest]]) < 0)
+                {
+                    smallest = j;
+                }
+            }
+            if (compare(keys[heap[smallest]], key) >= 0) break;
+            place(heap[smallest], k);
+            k = smallest;
+        }
+        place(handle, k);
+    }
+
+   /***********************************************************************
+    * Helper functions for compares and moves.
+    **********************************************************************/
+    private int compare(Key a, Key b) {
+        if (comparator == null) {
+            @SuppressWarnings("unchecked")
+            Comparable<Key> comparable = (Comparable<Key>) a;
+            return comparable.compareTo(b);
+        }
+        else {
+            return comparator.compare(a, b);
+        }
+    }
+
+    private void place(int handle, int k) {
+        heap[k] = handle;
+        handleToIndex[handle] = k;
+    }
+
+    private boolean isMinHeap() {
+        // is heap[0..N-1] a min heap?
+        for (int k = 1; k < N; k++)
+        {
+            if (compare(keys[heap[(k - 1) / d]], keys[heap[k]]) > 0)
+            {
+                return false;
+            }
+        }
+
+        // Is handleToIndex consistent with heap?
+        for (int k = 0; k < N; k++)
+        {
+            if (handleToIndex[heap[k]] != k)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+// Heuristic that improves another with what earlier searches of the same
+// layout learned (Adaptive A*).  If a search from some start found a
+// shortest solution of cost C, every state it reached at cost g from that
+// start is at least C - g moves from the goal: otherwise the start would
+// have a shorter solution through it.  Each state's estimate is the
+// largest of the base heuristic's and these bounds, so it stays
+// admissible, and it is exact for states on an earlier solution.
+//
+// Every search learned from must be of the layout being estimated, and
+// only the most recent MAX_SEARCHES are kept.  Their tables are hashed on
+// ZobristKeys, as Solver fills them.
+public class LearnedHeuristic implements Heuristic
+{
+	public static final int MAX_SEARCHES = 4;
+
+	private Heuristic base;
+
+	// Each earlier search's table of costs from its start, and its
+	// solution cost, most recent last
+	private StateTable[] tables;
+	private int[] solutionCosts;
+
+	public LearnedHeuristic(Heuristic baseP)
+	{
+		base = baseP;
+		tables = new StateTable[0];
+		solutionCosts = new int[0];
+	}
+
+	private LearnedHeuristic(Heuristic baseP, StateTable[] tablesP, int[] solutionCostsP)
+	{
+		base = baseP;
+		tables = tablesP;
+		solutionCosts = solutionCostsP;
+	}
+
+	// This heuristic plus what one more search learned, dropping the oldest
+	// search if there would be more than MAX_SEARCHES
+	public LearnedHeuristic learn(StateTable table, int solutionCost)
+	{
+		int keep = Math.min(tables.length, MAX_SEARCHES - 1);
+		StateTable[] newTables = Arrays.copyOfRange(tables, tables.length - keep, tables.length + 1);
+		int[] newCosts = Arrays.copyOfRange(solutionCosts, solutionCosts.length - keep, solutionCosts.length + 1);
+		newTables[keep] = table;
+		newCosts[keep] = solutionCost;
+		return new LearnedHeuristic(base, newTables, newCosts);
+	}
+
+	public Heuristic getBase()
+	{
+		return base;
+	}
+
+	public int estimate(BoardLayout layout, long state)
+	{
+		int h = base.estimate(layout, state);
+		if (tables.length == 0)
+		{
+			return h;
+		}
+		int hash = ZobristKeys.hash(ZobristKeys.key(layout, state));
+		for (int i = 0; i < tables.length; i++)
+		{
+			int entry = tables[i].find(state, hash);
+			if (entry != StateTable.NO_ENTRY)
+			{
+				h = Math.max(h, solutionCosts[i] - tables[i].getCost(entry));
+			}
+		}
+		return h;
+	}
+}
@@ -0,0 +1,6 @@
+// Callback for PuzzleBoard.forEachNeighbor: vehicle id moved by delta cells
+// (negative is left / up) leads to a neighbor board
+public interface NeighborVisitor
+{
+	void visitNeighbor(int id, int delta);
+}
@@ -0,0 +1,393 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// A* spread over several threads by state hash.  Each worker owns the
+// states that hash to it, with its own table of costs and parents and its
+// own open list.  Expanding a state hands each neighbor the worker owns
+// straight to its own table and open list, and sends the rest to their
+// owner's mailbox, a lock-free queue, where the owner decides whether it
+// is new or cheaper than before.  States are reopened whenever a cheaper path to
+// them arrives, since workers do not expand in global f order.
+//
+// The first goal reached sets an incumbent solution cost; from then on
+// states with an f-cost at least that high are dropped, and cheaper goals
+// replace it.  The search is over when every worker is idle and no message
+// is in flight.  One counter tracks both, so it only reaches zero then:
+// a message counts from just before it is sent until it has been handled,
+// and a worker counts while it is busy.  Every state with an f-cost below
+// the incumbent has been expanded by then, so with an admissible heuristic
+// the incumbent is the least cost.
+//
+// An idle worker spins briefly, then parks until a message is sent to it
+// or the search ends.  Workers run on a shared pool of daemon threads that
+// grows to as many as are solving at once and reuses them across solves.
+public class ParallelAStarSearch
+{
+	// Idle polls before a worker parks, and the longest it parks for, in
+	// case a wake-up is missed
+	private static final int IDLE_SPINS = 100;
+	private static final long PARK_NANOS = 1000000L;
+
+	private static final ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory()
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "ParallelAStarSearch-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private BoardLayout layout;
+	private Heuristic heuristic;
+	private Worker[] workers;
+
+	// Busy workers plus messages sent but not yet handled
+	private AtomicLong outstanding;
+
+	// Cheapest goal reached so far, guarded by this
+	private volatile int incumbent = Integer.MAX_VALUE;
+	private long goalState;
+
+	private volatile Throwable failure;
+
+	public ParallelAStarSearch(BoardLayout layoutP, Heuristic heuristicP, long start, int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("threads must be at least 1: " + threads);
+		}
+		layout = layoutP;
+		heuristic = heuristicP;
+
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			workers[i] = new Worker();
+		}
+		outstanding = new AtomicLong(threads);
+		send(start, 0, start);
+
+		// Every worker must be running for the search to finish, which the
+		// cached pool guarantees by starting threads as needed
+		Future<?>[] running = new Future<?>[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			running[i] = pool.submit(workers[i]);
+		}
+		try
+		{
+			for (Future<?> future : running)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			failure = e;
+			for (Future<?> future : running)
+			{
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			failure = e.getCause();
+		}
+
+		if (failure != null)
+		{
+			throw new IllegalStateException("Parallel search failed", failure);
+		}
+		if (incumbent == Integer.MAX_VALUE)
+		{
+			throw new NoSuchElementException("No solution");
+		}
+	}
+
+	private Worker ownerOf(long state)
+	{
+		state ^= state >>> 33;
+		state *= 0xff51afd7ed558ccdL;
+		state ^= state >>> 33;
+		return workers[(int) ((state & Long.MAX_VALUE) % workers.length)];
+	}
+
+	private void send(long state, int cost, long parent)
+	{
+		outstanding.incrementAndGet();
+		Worker owner = ownerOf(state);
+		owner.mailbox.offer(new Message(state, cost, parent));
+		owner.wake();
+	}
+
+	// Counts one busy worker or handled message as done, and wakes every
+	// worker to exit if that was the last
+	private void done()
+	{
+		if (outstanding.decrementAndGet() == 0)
+		{
+			for (Worker worker : workers)
+			{
+				worker.wake();
+			}
+		}
+	}
+
+	private synchronized void offerGoal(long state, int cost)
+	{
+		if (cost < incumbent)
+		{
+			goalState = state;
+			incumbent = cost;
+		}
+	}
+
+	private static class Message
+	{
+		private final long state;
+		private final int cost;
+		private final long parent;
+
+		public Message(long stateP, int costP, long parentP)
+		{
+			state = stateP;
+			cost = costP;
+			parent = parentP;
+		}
+	}
+
+	private class Worker implements Runnable, NeighborVisitor
+	{
+		private ConcurrentLinkedQueue<Message> mailbox = new ConcurrentLinkedQueue<Message>();
+		private StateTable table = new StateTable();
+		private BucketPQ open = new BucketPQ(true, true);
+
+		// Per table entry: the parent's state, and the heuristic estimate
+		private long[] parents = new long[1024];
+		private int[] estimates = new int[1024];
+
+		private long expanding;
+		private int expandingCost;
+		private long expandingParent;
+		private int nodesExpanded;
+
+		// The thread running this worker, and whether it is parked or about
+		// to park
+		private volatile Thread thread;
+		private volatile boolean parked;
+		private int idleSpins;
+
+		public void run()
+		{
+			thread = Thread.currentThread();
+			try
+			{
+				boolean busy = true;
+				while (failure == null)
+				{
+					Message message = mailbox.poll();
+					int entry;
+					if (message != null)
+					{
+						if (!busy)
+						{
+							// Still counted as in flight, so outstanding
+							// cannot reach zero in between
+							outstanding.incrementAndGet();
+							busy = true;
+						}
+						receive(message.state, message.cost, message.parent);
+						done();
+						idleSpins = 0;
+					}
+					else if ((entry = nextUsefulEntry()) != StateTable.NO_ENTRY)
+					{
+						expand(entry);
+						idleSpins = 0;
+					}
+					else if (busy)
+					{
+						done();
+						busy = false;
+					}
+					else if (outstanding.get() == 0)
+					{
+						return;
+					}
+					else
+					{
+						idle();
+					}
+				}
+			}
+			catch (Throwable t)
+			{
+				failure = t;
+				for (Worker worker : workers)
+				{
+					worker.wake();
+				}
+			}
+			finally
+			{
+				thread = null;
+			}
+		}
+
+		// Waits a little for a message or the end of the search.  parked is
+		// set before the mailbox is checked, and senders check it after
+		// queueing, so a message sent meanwhile either is seen here or
+		// unparks this thread.
+		private void idle()
+		{
+			if (idleSpins < IDLE_SPINS)
+			{
+				idleSpins++;
+				Thread.onSpinWait();
+				return;
+			}
+			parked = true;
+			if (mailbox.isEmpty() && outstanding.get() != 0 && failure == null)
+			{
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+			parked = false;
+		}
+
+		private void wake()
+		{
+			Thread current = thread;
+			if (parked && current != null)
+			{
+				LockSupport.unpark(current);
+			}
+		}
+
+		// Removes and returns the best open entry that could still lead to a
+		// cheaper goal, or NO_ENTRY, dropping any that could not
+		private int nextUsefulEntry()
+		{
+			while (!open.isEmpty())
+			{
+				int entry = open.delMin();
+				if (table.getCost(entry) + estimates[entry] < incumbent)
+				{
+					return entry;
+				}
+			}
+			return StateTable.NO_ENTRY;
+		}
+
+		// Records state, owned by this worker, as reached at cost from parent
+		private void receive(long state, int cost, long parent)
+		{
+			int entry = table.find(state);
+			if (entry == StateTable.NO_ENTRY)
+			{
+				entry = table.add(state, cost, StateTable.NO_ENTRY);
+				if (entry >= parents.length)
+				{
+					parents = Arrays.copyOf(parents, parents.length * 2);
+					estimates = Arrays.copyOf(estimates, estimates.length * 2);
+				}
+				estimates[entry] = heuristic.estimate(layout, state);
+			}
+			else if (cost < table.getCost(entry))
+			{
+				table.setCost(entry, cost);
+			}
+			else
+			{
+				return;
+			}
+			parents[entry] = parent;
+
+			if (layout.isGoal(state))
+			{
+				offerGoal(state, cost);
+				return;
+			}
+			int f = cost + estimates[entry];
+			if (f >= incumbent)
+			{
+				return;
+			}
+			if (open.contains(entry))
+			{
+				open.updateKey(entry, f, cost);
+			}
+			else
+			{
+				open.insert(entry, f, cost);
+			}
+		}
+
+		private void expand(int entry)
+		{
+			expanding = table.getKey(entry);
+			expandingCost = table.getCost(entry);
+			expandingParent = parents[entry];
+			layout.forEachNeighbor(expanding, this);
+			nodesExpanded++;
+		}
+
+		public void visitNeighbor(int id, int delta)
+		{
+			long neighbor = layout.move(expanding, id, delta);
+			// The parent already has a lower cost, so its owner would drop it
+			if (neighbor == expandingParent)
+			{
+				return;
+			}
+			if (ownerOf(neighbor) == this)
+			{
+				// This worker is busy, so outstanding cannot reach zero
+				receive(neighbor, expandingCost + 1, expanding);
+			}
+			else
+			{
+				send(neighbor, expandingCost + 1, expanding);
+			}
+		}
+	}
+
+	public int getNodesExpanded()
+	{
+		int total = 0;
+		for (Worker worker : workers)
+		{
+			total += worker.nodesExpanded;
+		}
+		return total;
+	}
+
+	// Every state from the start to the goal, both included.  Each parent
+	// recorded was reached more cheaply than its child, so following them
+	// from the goal ends at the start.
+	public long[] getPath()
+	{
+		long[] path = new long[incumbent + 1];
+		long state = goalState;
+		for (int i = incumbent; i > 0; i--)
+		{
+			path[i] = state;
+			Worker owner = ownerOf(state);
+			state = owner.parents[owner.table.find(state)];
+		}
+		path[0] = state;
+		return path;
+	}
+}
@@ -0,0 +1,190 @@
+import java.util.Arrays;
+
+// Exact distances to the goal in an abstraction of a layout that keeps only
+// the red car and a chosen subset of the other vehicles.  Removing vehicles
+// can only make the puzzle easier, so a distance read from the table is a
+// lower bound for the full board.
+//
+// The table holds one byte per placement of the pattern vehicles, indexed
+// by their offsets in mixed radix, and is filled by a breadth-first search
+// backward from every abstract goal state.  If countRedMoves is false the
+// red car slides for free, so that databases over disjoint vehicle subsets
+// can be added together without counting any move twice.
+public class PatternDatabase
+{
+	// Largest table built, in entries (5^8 placements of eight vehicles)
+	public static final int MAX_ENTRIES = 390625;
+
+	private static final int UNREACHABLE = 0xff;
+
+	private int[] ids;
+	private int[] radix;
+	private boolean[] counted;
+	private byte[] distances;
+
+	public PatternDatabase(BoardLayout layout, int[] vehicleIds, boolean countRedMoves)
+	{
+		if (!layout.hasVehicle(0))
+		{
+			throw new IllegalArgumentException("Layout has no red car");
+		}
+
+		// Red car first, then the requested vehicles
+		int[] pattern = new int[vehicleIds.length + 1];
+		int count = 0;
+		pattern[count++] = 0;
+		for (int id : vehicleIds)
+		{
+			if (id != 0 && layout.hasVehicle(id))
+			{
+				pattern[count++] = id;
+			}
+		}
+		ids = Arrays.copyOf(pattern, count);
+
+		radix = new int[count];
+		counted = new boolean[count];
+		long size = 1;
+		for (int i = 0; i < count; i++)
+		{
+			radix[i] = (int) size;
+			counted[i] = (i > 0) || countRedMoves;
+			size *= layout.getNumOffsets(ids[i]);
+		}
+		if (size > MAX_ENTRIES)
+		{
+			throw new IllegalArgumentException("Pattern of " + count + " vehicles needs " + size + " entries, more than " + MAX_ENTRIES);
+		}
+
+		distances = new byte[(int) size];
+		Arrays.fill(distances, (byte) UNREACHABLE);
+		build(layout);
+	}
+
+	public int[] getVehicleIds()
+	{
+		return ids;
+	}
+
+	public int size()
+	{
+		return distances.length;
+	}
+
+	// Distance from the abstraction of state to the goal, or
+	// Heuristic.DEAD_END if the goal cannot be reached even with only the
+	// pattern vehicles on the board
+	public int lookup(BoardLayout layout, long state)
+	{
+		int index = 0;
+		for (int i = 0; i < ids.length; i++)
+		{
+			index += layout.getOffset(state, ids[i]) * radix[i];
+		}
+		int distance = distances[index] & 0xff;
+		return (distance == UNREACHABLE) ? Heuristic.DEAD_END : distance;
+	}
+
+	// 0-1 breadth-first search backward from every goal placement.  Each
+	// step goes from a placement to a predecessor, one from which a single
+	// move leads to it; uncounted moves go on the front of the deque,
+	// counted ones on the back.
+	private void build(BoardLayout layout)
+	{
+		// A placement is pushed at most twice: once when first reached, and
+		// once more if an uncounted move later reaches it one step cheaper
+		int size = distances.length;
+		int[] deque = new int[3 * size + 1];
+		int head = size;
+		int tail = size;
+		int[] offsets = new int[ids.length];
+
+		for (int index = 0; index < size; index++)
+		{
+			decode(index, layout, offsets);
+			if (offsets[0] == 4)
+			{
+				distances[index] = 0;
+				deque[tail++] = index;
+			}
+		}
+
+		boolean[] done = new boolean[size];
+		while (head < tail)
+		{
+			int index = deque[head++];
+			if (done[index])
+			{
+				continue;
+			}
+			done[index] = true;
+			int distance = distances[index] & 0xff;
+
+			decode(index, layout, offsets);
+			for (int i = 0; i < ids.length; i++)
+			{
+				int id = ids[i];
+				int offset = offsets[i];
+				long others = occupancyWithout(layout, offsets, i);
+				for (int delta = -1; delta <= 1; delta += 2)
+				{
+					// The move from offset + delta back to offset enters the
+					// cells this vehicle would leave, so they must be free,
+					// just as BoardLayout.canMove requires
+					int previous = offset + delta;
+					if (previous < 0 || previous >= layout.getNumOffsets(id))
+					{
+						continue;
+					}
+					long entered = layout.getCellMask(id, offset) & ~layout.getCellMask(id, previous);
+					if ((entered & others) != 0)
+					{
+						continue;
+					}
+
+					int neighbor = index + delta * radix[i];
+					int neighborDistance = distance + (counted[i] ? 1 : 0);
+					if (neighborDistance >= UNREACHABLE || neighborDistance >= (distances[neighbor] & 0xff))
+					{
+						continue;
+					}
+					distances[neighbor] = (byte) neighborDistance;
+					if (counted[i])
+					{
+						deque[tail++] = neighbor;
+					}
+					else
+					{
+						deque[--head] = neighbor;
+					}
+				}
+			}
+		}
+	}
+
+	private void decode(int index, BoardLayout layout, int[] offsets)
+	{
+		for (int i = 0; i < ids.length; i++)
+		{
+			int numOffsets = layout.getNumOffsets(ids[i]);
+			offsets[i] = index % numOffsets;
+			index /= numOffsets;
+		}
+	}
+
+	// Cells covered by every pattern vehicle but the one at skip.
+	// Placements where vehicles overlap are kept, so that boards that start
+	// out overlapping still get a valid bound.
+	private long occupancyWithout(BoardLayout layout, int[] offsets, int skip)
+	{
+		long occupied = 0;
+		for (int i = 0; i < ids.length; i++)
+		{
+			if (i != skip)
+			{
+				occupied |= layout.getCellMask(ids[i], offsets[i]);
+			}
+		}
+		return occupied;
+	}
+}
@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Heuristic that reads PatternDatabases built for the layout being solved.
+//
+// The vehicles are split into groups of at most groupSize (counting the red
+// car, which is in every group), most relevant first: vehicles that can
+// cross the red car's path, then vehicles that can cross theirs, then the
+// rest.  With MAX each database counts every move of its vehicles and the
+// estimate is the largest lookup.  With ADD the groups only count moves of
+// their own vehicles (the red car's in the first group only) and the
+// estimate is the sum.
+//
+// Building the databases is far more expensive than a search, so they are
+// cached per layout and shared by every solve of it, such as PuzzleManager
+// re-solving after each edit.
+public class PatternDatabaseHeuristic implements Heuristic
+{
+	public enum Combine
+	{
+		MAX,
+		ADD,
+	}
+
+	private static final int DEFAULT_GROUP_SIZE = 7;
+	private static final int CACHE_SIZE = 32;
+
+	private static final Map<CacheKey, Cached> cache = new LinkedHashMap<CacheKey, Cached>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<CacheKey, Cached> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	// A cache entry, null until its databases are built
+	private static class Cached
+	{
+		private PatternDatabase[] databases;
+	}
+
+	private int groupSize;
+	private Combine combine;
+
+	// Databases for the layout looked up most recently, so a search does
+	// not hash its layout on every estimate
+	private volatile LayoutDatabases last;
+
+	public PatternDatabaseHeuristic()
+	{
+		this(DEFAULT_GROUP_SIZE, Combine.MAX);
+	}
+
+	public PatternDatabaseHeuristic(int groupSizeP, Combine combineP)
+	{
+		if (groupSizeP < 2)
+		{
+			throw new IllegalArgumentException("groupSize must be at least 2: " + groupSizeP);
+		}
+		groupSize = groupSizeP;
+		combine = combineP;
+	}
+
+	public int estimate(BoardLayout layout, long state)
+	{
+		PatternDatabase[] databases = getDatabases(layout);
+		int h = 0;
+		for (PatternDatabase database : databases)
+		{
+			int distance = database.lookup(layout, state);
+			h = (combine == Combine.MAX) ? Math.max(h, distance) : h + distance;
+		}
+		return Math.min(h, DEAD_END);
+	}
+
+	public PatternDatabase[] getDatabases(BoardLayout layout)
+	{
+		LayoutDatabases current = last;
+		if (current != null && current.layout == layout)
+		{
+			return current.databases;
+		}
+
+		CacheKey key = new CacheKey(layout, groupSize, combine);
+		Cached cached;
+		synchronized (cache)
+		{
+			cached = cache.get(key);
+			if (cached == null)
+			{
+				cached = new Cached();
+				cache.put(key, cached);
+			}
+		}
+
+		// Built outside the cache lock, so a slow build only holds up other
+		// solves of the same layout
+		PatternDatabase[] databases;
+		synchronized (cached)
+		{
+			if (cached.databases == null)
+			{
+				cached.databases = build(layout);
+			}
+			databases = cached.databases;
+		}
+		last = new LayoutDatabases(layout, databases);
+		return databases;
+	}
+
+	private PatternDatabase[] build(BoardLayout layout)
+	{
+		int[] order = orderByRelevance(layout);
+		ArrayList<PatternDatabase> databases = new ArrayList<PatternDatabase>();
+		int start = 0;
+		do
+		{
+			// Shrink the group if its table would be too large
+			int end = Math.min(order.length, start + groupSize - 1);
+			while (end > start + 1 && tableSize(layout, order, start, end) > PatternDatabase.MAX_ENTRIES)
+			{
+				end--;
+			}
+			int[] group = new int[end - start];
+			System.arraycopy(order, start, group, 0, group.length);
+
+			boolean countRedMoves = (combine == Combine.MAX) || databases.isEmpty();
+			databases.add(new PatternDatabase(layout, group, countRedMoves));
+			start = end;
+		}
+		while (start < order.length);
+
+		return databases.toArray(new PatternDatabase[databases.size()]);
+	}
+
+	private static long tableSize(BoardLayout layout, int[] order, int start, int end)
+	{
+		long size = layout.getNumOffsets(0);
+		for (int i = start; i < end; i++)
+		{
+			size *= layout.getNumOffsets(order[i]);
+		}
+		return size;
+	}
+
+	// Every vehicle but the red car: first those whose lane crosses the red
+	// car's path, then those whose lane crosses one of theirs, then the rest
+	private static int[] orderByRelevance(BoardLayout layout)
+	{
+		int[] ids = layout.getVehicleIds();
+		int[] order = new int[ids.length - 1];
+		int count = 0;
+		long placed = 1L;
+		long reached = laneCells(layout, 0);
+		for (int pass = 0; pass < 3; pass++)
+		{
+			long nextReached = reached;
+			for (int id : ids)
+			{
+				if ((placed & (1L << id)) != 0)
+				{
+					continue;
+				}
+				long lane = laneCells(layout, id);
+				if (pass == 2 || (lane & reached) != 0)
+				{
+					order[count++] = id;
+					placed |= 1L << id;
+					nextReached |= lane;
+				}
+			}
+			reached = nextReached;
+		}
+		return order;
+	}
+
+	private static long laneCells(BoardLayout layout, int id)
+	{
+		long cells = 0;
+		for (int offset = 0; offset < layout.getNumOffsets(id); offset++)
+		{
+			cells |= layout.getCellMask(id, offset);
+		}
+		return cells;
+	}
+
+	private static class LayoutDatabases
+	{
+		private final BoardLayout layout;
+		private final PatternDatabase[] databases;
+
+		public LayoutDatabases(BoardLayout layoutP, PatternDatabase[] databasesP)
+		{
+			layout = layoutP;
+			databases = databasesP;
+		}
+	}
+
+	private static class CacheKey
+	{
+		private final BoardLayout layout;
+		private final int groupSize;
+		private final Combine combine;
+
+		public CacheKey(BoardLayout layoutP, int groupSizeP, Combine combineP)
+		{
+			layout = layoutP;
+			groupSize = groupSizeP;
+			combine = combineP;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + layout.hashCode();
+			result = prime * result + groupSize;
+			result = prime * result + combine.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass())
+			{
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return groupSize == other.groupSize && combine == other.combine && layout.equals(other.layout);
+		}
+	}
+}
@@ -10,9 +10,58 @@ public class PuzzleBoard
 	// You may add additional private fields here
 	private Vehicle[][] twoDBoardVehicles;
 	
+	// Packed mode: the board is also an offset per vehicle on a shared
+	// layout, which the search and neighbor listing work on.  idToVehicle
+	// and twoDBoardVehicles are still filled in by the constructor, so
+	// hashCode() and equals() work unchanged and a board never changes once
+	// built.
+	private BoardLayout layout;
+	private long packedState;
+	
 	public PuzzleBoard(Vehicle[] idToVehicleP)
 	{
 		idToVehicle = idToVehicleP.clone();
+		fillTwoDBoard();
+	}
+	
+	public PuzzleBoard(BoardLayout layoutP, long packedStateP)
+	{
+		layout = layoutP;
+		packedState = packedStateP;
+		idToVehicle = layout.unpack(packedState);
+		fillTwoDBoard();
+	}
+	
+	public boolean isPacked()
+	{
+		return layout != null;
+	}
+	
+	// Returns an equal board in packed mode
+	public PuzzleBoard toPackedBoard()
+	{
+		if (isPacked())
+		{
+			return this;
+		}
+		BoardLayout newLayout = new BoardLayout(idToVehicle);
+		return new PuzzleBoard(newLayout, newLayout.pack(idToVehicle));
+	}
+	
+	// Only valid on a packed board
+	public BoardLayout getLayout()
+	{
+		return layout;
+	}
+	
+	// Only valid on a packed board
+	public long getPackedState()
+	{
+		return packedState;
+	}
+	
+	private void fillTwoDBoard()
+	{
 		twoDBoardVehicles = new Vehicle[6][6];
 		for(int i = 0; i < idToVehicle.length; i++)
 		{
@@ -55,6 +104,11 @@ public class PuzzleBoard
 	
 	public int heuristicCostToGoal()
 	{
+		if (isPacked())
+		{
+			return layout.heuristicCostToGoal(packedState);
+		}
+		
 		int h = 6 - (idToVehicle[0].getLeftTopColumn()+2);
 		for(int i = idToVehicle[0].getLeftTopColumn(); i < 6; i++)
 		{
@@ -68,11 +122,20 @@ public class PuzzleBoard
 	
 	public boolean isGoal()
 	{
+		if (isPacked())
+		{
+			return layout.isGoal(packedState);
+		}
 		return idToVehicle[0].getLeftTopColumn() == 4;
 	}
 	
 	public Iterable<PuzzleBoard> getNeighbors()
 	{
+		if (isPacked())
+		{
+			return getPackedNeighbors();
+		}
+		
 		ArrayList<PuzzleBoard> list = new ArrayList<PuzzleBoard>();
 		Vehicle[] array = idToVehicle.clone();
 		for(int i = 0; i < idToVehicle.length; i++)
@@ -124,6 +187,102 @@ public class PuzzleBoard
 		return list;
 	}
 	
+	// One neighbor per place each vehicle can slide to, any number of cells
+	// away, rather than one per one-cell step
+	public Iterable<PuzzleBoard> getSlideNeighbors()
+	{
+		final PuzzleBoard packed = toPackedBoard();
+		final ArrayList<PuzzleBoard> list = new ArrayList<PuzzleBoard>();
+		packed.layout.forEachSlide(packed.packedState, new NeighborVisitor()
+		{
+			public void visitNeighbor(int id, int delta)
+			{
+				list.add(packed.getNeighbor(id, delta));
+			}
+		});
+		return list;
+	}
+	
+	private Iterable<PuzzleBoard> getPackedNeighbors()
+	{
+		final ArrayList<PuzzleBoard> list = new ArrayList<PuzzleBoard>();
+		layout.forEachNeighbor(packedState, new NeighborVisitor()
+		{
+			public void visitNeighbor(int id, int delta)
+			{
+				list.add(getNeighbor(id, delta));
+			}
+		});
+		return list;
+	}
+	
+	// Reports each legal move to visitor without creating any boards, so
+	// the caller can decide whether a neighbor is worth building with
+	// getNeighbor().  Visits moves in the same order as getNeighbors().
+	public void forEachNeighbor(NeighborVisitor visitor)
+	{
+		if (isPacked())
+		{
+			layout.forEachNeighbor(packedState, visitor);
+			return;
+		}
+		
+		for (int i = 0; i < idToVehicle.length; i++)
+		{
+			Vehicle v = idToVehicle[i];
+			if (v == null)
+			{
+				continue;
+			}
+			int row = v.getLeftTopRow();
+			int column = v.getLeftTopColumn();
+			if (v.getIsHorizontal())
+			{
+				if (column - 1 >= 0 && twoDBoardVehicles[row][column - 1] == null)
+				{
+					visitor.visitNeighbor(i, -1);
+				}
+				if (column + v.getLength() < 6 && twoDBoardVehicles[row][column + v.getLength()] == null)
+				{
+					visitor.visitNeighbor(i, 1);
+				}
+			}
+			else
+			{
+				if (row - 1 >= 0 && twoDBoardVehicles[row - 1][column] == null)
+				{
+					visitor.visitNeighbor(i, -1);
+				}
+				if (row + v.getLength() < 6 && twoDBoardVehicles[row + v.getLength()][column] == null)
+				{
+					visitor.visitNeighbor(i, 1);
+				}
+			}
+		}
+	}
+	
+	// The board after vehicle id slides by delta cells.  Does not check that
+	// the move is legal.
+	public PuzzleBoard getNeighbor(int id, int delta)
+	{
+		if (isPacked())
+		{
+			return new PuzzleBoard(layout, layout.move(packedState, id, delta));
+		}
+		
+		Vehicle v = idToVehicle[id];
+		Vehicle[] array = idToVehicle.clone();
+		if (v.getIsHorizontal())
+		{
+			array[id] = new Vehicle(id, true, v.getLeftTopRow(), v.getLeftTopColumn() + delta, v.getLength());
+		}
+		else
+		{
+			array[id] = new Vehicle(id, false, v.getLeftTopRow() + delta, v.getLeftTopColumn(), v.getLength());
+		}
+		return new PuzzleBoard(array);
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -168,6 +327,29 @@ public class PuzzleBoard
 		return ret;
 	}
 	
+	// A well-mixed 64-bit key for hashing boards in searches and caches,
+	// equal for equal boards (see ZobristKeys).  hashCode() cannot change.
+	public long searchKey()
+	{
+		if (isPacked())
+		{
+			return ZobristKeys.key(layout, packedState);
+		}
+		return ZobristKeys.key(idToVehicle);
+	}
+	
+	// Key of getNeighbor(id, delta), given this board's searchKey()
+	public long neighborSearchKey(long key, int id, int delta)
+	{
+		if (isPacked())
+		{
+			return ZobristKeys.move(layout, key, packedState, id, delta);
+		}
+		Vehicle v = idToVehicle[id];
+		int offset = v.getIsHorizontal() ? v.getLeftTopColumn() : v.getLeftTopRow();
+		return key ^ ZobristKeys.get(id, offset) ^ ZobristKeys.get(id, offset + delta);
+	}
+	
 	@Override
 	public int hashCode()
 	{
@@ -0,0 +1,414 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Binary corpus of boards, a few bytes each.  The file is MAGIC followed
+// by records, each starting with a tag byte:
+//
+//     LAYOUT_TAG  the layout descriptor (BoardLayout.getDescriptor), two
+//                 longs; the boards after it are on this layout.  The
+//                 first MAX_LAYOUTS layouts are numbered from 0 in the
+//                 order they appear.
+//     REUSE_TAG   an unsigned short, the number of an earlier layout that
+//                 the boards after it are on
+//     BOARD_TAG   a packed state, in just enough bytes for the layout's
+//                 highest vehicle id, low byte first
+//     SOLVED_TAG  a packed state as for BOARD_TAG, then its Solution as
+//                 Solution.writeTo writes it
+//
+// Layout records are only written when the layout changes, and each
+// layout's descriptor is written once, so a board costs one tag byte plus
+// at most six state bytes, and a solution two bytes plus one per move.
+// Writer and Reader stream records through a buffer and never hold more
+// than one board.
+//
+// Usage: PuzzleCorpus -toBinary input output [-solve]
+//        PuzzleCorpus -toText input output
+//
+// -toBinary reads a directory of board files or a text corpus (see
+// BulkBoardLoader); -solve stores each solvable board's solution too.
+// -toText writes one board file per board if output is a directory, and a
+// text corpus otherwise.  Text has no room for solutions, so they are
+// dropped.
+public class PuzzleCorpus
+{
+	public static final int MAGIC = 0x52484331;
+
+	private static final int LAYOUT_TAG = 1;
+	private static final int BOARD_TAG = 2;
+	private static final int SOLVED_TAG = 3;
+	private static final int REUSE_TAG = 4;
+
+	public static final int MAX_LAYOUTS = 1 << 16;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// Bytes holding a packed state on layout
+	private static int stateBytes(BoardLayout layout)
+	{
+		int[] ids = layout.getVehicleIds();
+		int bits = (ids.length == 0) ? 0 : (ids[ids.length - 1] + 1) * BoardLayout.BITS_PER_VEHICLE;
+		return (bits + 7) / 8;
+	}
+
+	// A board read from a corpus, with its solution if one was stored
+	public static class Entry
+	{
+		private PuzzleBoard board;
+		private Solution solution;
+
+		public Entry(PuzzleBoard boardP, Solution solutionP)
+		{
+			board = boardP;
+			solution = solutionP;
+		}
+
+		// Packed
+		public PuzzleBoard getBoard()
+		{
+			return board;
+		}
+
+		// null if none was stored
+		public Solution getSolution()
+		{
+			return solution;
+		}
+	}
+
+	public static class Writer implements Closeable
+	{
+		private DataOutputStream out;
+		private Map<BoardLayout, Integer> layoutNumbers = new HashMap<BoardLayout, Integer>();
+		private BoardLayout layout;
+		private int stateBytes;
+		private long size;
+
+		public Writer(OutputStream outP) throws IOException
+		{
+			out = new DataOutputStream(new BufferedOutputStream(outP, BUFFER_SIZE));
+			out.writeInt(MAGIC);
+		}
+
+		public void write(PuzzleBoard board) throws IOException
+		{
+			writeBoard(board.toPackedBoard(), BOARD_TAG);
+		}
+
+		// solution must start from board
+		public void write(PuzzleBoard board, Solution solution) throws IOException
+		{
+			writeBoard(board.toPackedBoard(), SOLVED_TAG);
+			solution.writeTo(out);
+		}
+
+		private void writeBoard(PuzzleBoard packed, int tag) throws IOException
+		{
+			if (!packed.getLayout().equals(layout))
+			{
+				layout = packed.getLayout();
+				stateBytes = stateBytes(layout);
+				Integer number = layoutNumbers.get(layout);
+				if (number != null)
+				{
+					out.writeByte(REUSE_TAG);
+					out.writeShort(number);
+				}
+				else
+				{
+					long[] descriptor = layout.getDescriptor();
+					out.writeByte(LAYOUT_TAG);
+					out.writeLong(descriptor[0]);
+					out.writeLong(descriptor[1]);
+					if (layoutNumbers.size() < MAX_LAYOUTS)
+					{
+						layoutNumbers.put(layout, layoutNumbers.size());
+					}
+				}
+			}
+			out.writeByte(tag);
+			long state = packed.getPackedState();
+			for (int i = 0; i < stateBytes; i++)
+			{
+				out.writeByte((int) (state >>> (8 * i)));
+			}
+			size++;
+		}
+
+		// Boards written so far
+		public long size()
+		{
+			return size;
+		}
+
+		public void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+	public static class Reader implements Closeable
+	{
+		private DataInputStream in;
+		private List<BoardLayout> layouts = new ArrayList<BoardLayout>();
+		private BoardLayout layout;
+		private int stateBytes;
+
+		// Tag of the next board record, or -1 if it has not been read
+		private int nextTag = -1;
+
+		public Reader(InputStream inP) throws IOException
+		{
+			in = new DataInputStream(new BufferedInputStream(inP, BUFFER_SIZE));
+			int magic = in.readInt();
+			if (magic != MAGIC)
+			{
+				throw new IOException("Not a puzzle corpus: starts with " + Integer.toHexString(magic));
+			}
+		}
+
+		// Is there another board?  Reads any layout records before it.
+		public boolean hasNext() throws IOException
+		{
+			while (nextTag == -1)
+			{
+				int tag = in.read();
+				if (tag == -1)
+				{
+					return false;
+				}
+				if (tag == LAYOUT_TAG)
+				{
+					layout = BoardLayout.fromDescriptor(new long[] {in.readLong(), in.readLong()});
+					stateBytes = stateBytes(layout);
+					if (layouts.size() < MAX_LAYOUTS)
+					{
+						layouts.add(layout);
+					}
+				}
+				else if (tag == REUSE_TAG)
+				{
+					int number = in.readUnsignedShort();
+					if (number >= layouts.size())
+					{
+						throw new IOException("Reuse of layout " + number + " before it was defined");
+					}
+					layout = layouts.get(number);
+					stateBytes = stateBytes(layout);
+				}
+				else if (tag == BOARD_TAG || tag == SOLVED_TAG)
+				{
+					if (layout == null)
+					{
+						throw new IOException("Board record before any layout record");
+					}
+					nextTag = tag;
+				}
+				else
+				{
+					throw new IOException("Unknown record tag " + tag);
+				}
+			}
+			return true;
+		}
+
+		public Entry next() throws IOException
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException("No more boards");
+			}
+			long state = 0;
+			for (int i = 0; i < stateBytes; i++)
+			{
+				state |= (long) in.readUnsignedByte() << (8 * i);
+			}
+			PuzzleBoard board = new PuzzleBoard(layout, state);
+			Solution solution = (nextTag == SOLVED_TAG) ? Solution.readFrom(in, board) : null;
+			nextTag = -1;
+			return new Entry(board, solution);
+		}
+
+		// Every remaining entry, read as the stream is consumed.  Closing the
+		// stream closes the reader.
+		public Stream<Entry> entries()
+		{
+			Iterator<Entry> entries = new Iterator<Entry>()
+			{
+				public boolean hasNext()
+				{
+					try
+					{
+						return Reader.this.hasNext();
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				}
+
+				public Entry next()
+				{
+					try
+					{
+						return Reader.this.next();
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				}
+			};
+			Stream<Entry> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries,
+					Spliterator.ORDERED | Spliterator.NONNULL), false);
+			return stream.onClose(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						close();
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+		}
+
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	// Writes every board in a directory of board files or a text corpus
+	public static long toBinary(File input, File output, SolverOptions solveWith) throws IOException
+	{
+		try (Writer writer = new Writer(new FileOutputStream(output)))
+		{
+			if (input.isDirectory())
+			{
+				for (File file : PuzzleManager.listBoardFiles(input))
+				{
+					In in = new In(file);
+					write(writer, new PuzzleBoard(PuzzleManager.deserializeIntoVehicleArray(in)), solveWith);
+					in.close();
+				}
+			}
+			else
+			{
+				try (BulkBoardLoader loader = new BulkBoardLoader(input))
+				{
+					while (loader.hasNext())
+					{
+						write(writer, loader.nextPackedBoard(), solveWith);
+					}
+				}
+			}
+			return writer.size();
+		}
+	}
+
+	private static void write(Writer writer, PuzzleBoard board, SolverOptions solveWith) throws IOException
+	{
+		if (solveWith != null)
+		{
+			try
+			{
+				writer.write(board, new Solver(board, solveWith).getSolution());
+				return;
+			}
+			catch (NoSuchElementException e)
+			{
+				// No solution; stored as a bare board
+			}
+		}
+		writer.write(board);
+	}
+
+	// Writes every board in a binary corpus as a board file in output if it
+	// is a directory, and to a text corpus otherwise
+	public static long toText(File input, File output) throws IOException
+	{
+		long count = 0;
+		PrintStream corpus = output.isDirectory() ? null : new PrintStream(new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE));
+		try (Reader reader = new Reader(new FileInputStream(input)))
+		{
+			while (reader.hasNext())
+			{
+				PuzzleBoard board = reader.next().getBoard();
+				String text = PuzzleManager.serializeVehicleArray(board.getLayout().unpack(board.getPackedState()));
+				count++;
+				if (corpus == null)
+				{
+					try (PrintStream file = new PrintStream(new File(output, String.format("board-%06d.txt", count))))
+					{
+						file.print(text);
+					}
+				}
+				else
+				{
+					if (count > 1)
+					{
+						corpus.print('\n');
+					}
+					corpus.print(text);
+				}
+			}
+		}
+		finally
+		{
+			if (corpus != null)
+			{
+				corpus.close();
+			}
+		}
+		return count;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 3 || !(args[0].equals("-toBinary") || args[0].equals("-toText")))
+		{
+			System.err.println("Usage: PuzzleCorpus -toBinary input output [-solve]");
+			System.err.println("       PuzzleCorpus -toText input output");
+			System.exit(1);
+		}
+		File input = new File(args[1]);
+		File output = new File(args[2]);
+		long start = System.nanoTime();
+		long count;
+		if (args[0].equals("-toBinary"))
+		{
+			boolean solve = args.length > 3 && args[3].equals("-solve");
+			count = toBinary(input, output, solve ? PuzzleManager.createSolverOptions() : null);
+		}
+		else
+		{
+			count = toText(input, output);
+		}
+		System.out.println(String.format("%d boards in %.3fs", count, (System.nanoTime() - start) / 1e9));
+	}
+}
@@ -0,0 +1,403 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Generates hard boards.  For each layout (which vehicles there are, and
+// each one's orientation, lane and length), a DistanceTable searches
+// backward from every goal state and so finds the distance of every state
+// that can reach the goal.  The states furthest from the goal are the
+// hardest boards on that layout.  Layouts are searched in parallel, one per
+// task.
+//
+// Usage: PuzzleGenerator [-layouts n] [-seed s] [-vehicles min max]
+//                        [-from path] [-depth d] [-minDepth d]
+//                        [-perLayout k] [-threads n] [-out path]
+//
+// Layouts are sampled at random: the red car plus between min and max
+// (default 8 and 13) other cars and trucks, in lanes where a first
+// placement of them all fits.  -seed makes the sample, and so the output,
+// reproducible.  -from takes the layouts of the boards in a directory of
+// board files or a text corpus instead.
+//
+// For each layout whose furthest states are at least -minDepth moves from
+// the goal, up to -perLayout (default 1) of them are written, and with
+// -depth, also up to -perLayout states exactly that many moves away.
+// Boards go to -out as one board file each if it is a directory, and as a
+// text corpus (see BulkBoardLoader) otherwise, or to standard output.
+public class PuzzleGenerator
+{
+	private static final int RED_ID = 0;
+	private static final int RED_ROW = 2;
+	private static final int FIRST_CAR_ID = 1;
+	private static final int FIRST_TRUCK_ID = 12;
+	private static final int PLACEMENT_ATTEMPTS = 20;
+
+	private int depth = -1;
+	private int minDepth = 0;
+	private int perLayout = 1;
+
+	// Boards generated for one layout, hardest first
+	public static class LayoutResult
+	{
+		private BoardLayout layout;
+		private int maxDistance;
+		private int numStates;
+		private long[] states;
+		private int[] distances;
+
+		public LayoutResult(BoardLayout layoutP, int maxDistanceP, int numStatesP, long[] statesP, int[] distancesP)
+		{
+			layout = layoutP;
+			maxDistance = maxDistanceP;
+			numStates = numStatesP;
+			states = statesP;
+			distances = distancesP;
+		}
+
+		public BoardLayout getLayout()
+		{
+			return layout;
+		}
+
+		// Moves from the hardest boards to the goal, or -1 if the layout was
+		// too large to search or has no goal states
+		public int getMaxDistance()
+		{
+			return maxDistance;
+		}
+
+		// States that can reach the goal
+		public int getNumStates()
+		{
+			return numStates;
+		}
+
+		public int size()
+		{
+			return states.length;
+		}
+
+		public PuzzleBoard getBoard(int i)
+		{
+			return new PuzzleBoard(layout, states[i]);
+		}
+
+		// Moves from getBoard(i) to the goal
+		public int getDistance(int i)
+		{
+			return distances[i];
+		}
+	}
+
+	// Searches one layout and picks its boards to output
+	public LayoutResult generate(BoardLayout layout)
+	{
+		DistanceTable distances;
+		try
+		{
+			distances = new DistanceTable(layout);
+		}
+		catch (IllegalStateException e)
+		{
+			return new LayoutResult(layout, DistanceTable.UNREACHABLE, 0, new long[0], new int[0]);
+		}
+
+		int maxDistance = distances.getMaxDistance();
+		long[] hardest = new long[0];
+		long[] chosen = new long[0];
+		if (maxDistance != DistanceTable.UNREACHABLE && maxDistance >= minDepth)
+		{
+			hardest = distances.getStatesAt(maxDistance, perLayout);
+		}
+		if (depth >= 0 && depth != maxDistance)
+		{
+			chosen = distances.getStatesAt(depth, perLayout);
+		}
+
+		long[] states = Arrays.copyOf(hardest, hardest.length + chosen.length);
+		System.arraycopy(chosen, 0, states, hardest.length, chosen.length);
+		int[] stateDistances = new int[states.length];
+		Arrays.fill(stateDistances, 0, hardest.length, maxDistance);
+		Arrays.fill(stateDistances, hardest.length, states.length, depth);
+		return new LayoutResult(layout, maxDistance, distances.size(), states, stateDistances);
+	}
+
+	// Generates every layout's boards on pool, returning them in layout order
+	public List<LayoutResult> generateAll(List<BoardLayout> layouts, ForkJoinPool pool) throws InterruptedException
+	{
+		List<Future<LayoutResult>> futures = new ArrayList<Future<LayoutResult>>();
+		for (final BoardLayout layout : layouts)
+		{
+			futures.add(pool.submit(new Callable<LayoutResult>()
+			{
+				public LayoutResult call()
+				{
+					return generate(layout);
+				}
+			}));
+		}
+
+		List<LayoutResult> results = new ArrayList<LayoutResult>();
+		for (int i = 0; i < futures.size(); i++)
+		{
+			try
+			{
+				results.add(futures.get(i).get());
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException("Generating layout " + i + " failed", e.getCause());
+			}
+		}
+		return results;
+	}
+
+	// A layout of the red car and between minVehicles and maxVehicles
+	// others, about one in three of them trucks
+	public static BoardLayout randomLayout(Random random, int minVehicles, int maxVehicles)
+	{
+		Vehicle[] vehicles = new Vehicle[PuzzleManager.MAX_NUM_VEHICLES];
+		boolean[][] occupied = new boolean[PuzzleManager.NUM_ROWS][PuzzleManager.NUM_COLUMNS];
+		place(vehicles, occupied, new Vehicle(RED_ID, true, RED_ROW, random.nextInt(PuzzleManager.NUM_COLUMNS - 2), 2));
+
+		int count = minVehicles + random.nextInt(maxVehicles - minVehicles + 1);
+		int nextCar = FIRST_CAR_ID;
+		int nextTruck = FIRST_TRUCK_ID;
+		for (int i = 0; i < count; i++)
+		{
+			boolean truck = (random.nextInt(3) == 0 && nextTruck < vehicles.length) || nextCar == FIRST_TRUCK_ID;
+			if (truck && nextTruck == vehicles.length)
+			{
+				break;
+			}
+			int id = truck ? nextTruck : nextCar;
+			int length = truck ? 3 : 2;
+			for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS; attempt++)
+			{
+				boolean horizontal = random.nextBoolean();
+				int lane = random.nextInt(horizontal ? PuzzleManager.NUM_ROWS : PuzzleManager.NUM_COLUMNS);
+				int offset = random.nextInt((horizontal ? PuzzleManager.NUM_COLUMNS : PuzzleManager.NUM_ROWS) - length + 1);
+				// A vehicle sharing the red car's row could never let it out
+				if (horizontal && lane == RED_ROW)
+				{
+					continue;
+				}
+				Vehicle v = horizontal ? new Vehicle(id, true, lane, offset, length) : new Vehicle(id, false, offset, lane, length);
+				if (place(vehicles, occupied, v))
+				{
+					if (truck)
+					{
+						nextTruck++;
+					}
+					else
+					{
+						nextCar++;
+					}
+					break;
+				}
+			}
+		}
+		return new BoardLayout(vehicles);
+	}
+
+	// Adds v unless it overlaps a vehicle already placed
+	private static boolean place(Vehicle[] vehicles, boolean[][] occupied, Vehicle v)
+	{
+		for (int i = 0; i < v.getLength(); i++)
+		{
+			if (occupied[v.getLeftTopRow() + (v.getIsHorizontal() ? 0 : i)][v.getLeftTopColumn() + (v.getIsHorizontal() ? i : 0)])
+			{
+				return false;
+			}
+		}
+		for (int i = 0; i < v.getLength(); i++)
+		{
+			occupied[v.getLeftTopRow() + (v.getIsHorizontal() ? 0 : i)][v.getLeftTopColumn() + (v.getIsHorizontal() ? i : 0)] = true;
+		}
+		vehicles[v.getId()] = v;
+		return true;
+	}
+
+	// The distinct layouts of the boards in a directory of board files or a
+	// text corpus, in the order they first appear
+	public static List<BoardLayout> layoutsFrom(File path) throws IOException
+	{
+		List<BoardLayout> layouts = new ArrayList<BoardLayout>();
+		if (path.isDirectory())
+		{
+			for (File file : PuzzleManager.listBoardFiles(path))
+			{
+				In in = new In(file);
+				addLayout(layouts, new PuzzleBoard(PuzzleManager.deserializeIntoVehicleArray(in)).toPackedBoard().getLayout());
+				in.close();
+			}
+		}
+		else
+		{
+			try (BulkBoardLoader loader = new BulkBoardLoader(path))
+			{
+				while (loader.hasNext())
+				{
+					addLayout(layouts, loader.nextPackedBoard().getLayout());
+				}
+			}
+		}
+		return layouts;
+	}
+
+	private static void addLayout(List<BoardLayout> layouts, BoardLayout layout)
+	{
+		if (!layouts.contains(layout))
+		{
+			layouts.add(layout);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		PuzzleGenerator generator = new PuzzleGenerator();
+		int numLayouts = 100;
+		long seed = 1;
+		int minVehicles = 8;
+		int maxVehicles = 13;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File from = null;
+		File out = null;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-layouts"))
+			{
+				numLayouts = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-seed"))
+			{
+				seed = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("-vehicles"))
+			{
+				minVehicles = Integer.parseInt(args[++i]);
+				maxVehicles = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-from"))
+			{
+				from = new File(args[++i]);
+			}
+			else if (args[i].equals("-depth"))
+			{
+				generator.depth = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-minDepth"))
+			{
+				generator.minDepth = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-perLayout"))
+			{
+				generator.perLayout = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-threads"))
+			{
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-out"))
+			{
+				out = new File(args[++i]);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		if (minVehicles < 0 || maxVehicles < minVehicles || maxVehicles >= PuzzleManager.MAX_NUM_VEHICLES)
+		{
+			throw new IllegalArgumentException("Bad vehicle counts: " + minVehicles + " " + maxVehicles);
+		}
+
+		List<BoardLayout> layouts;
+		if (from != null)
+		{
+			layouts = layoutsFrom(from);
+		}
+		else
+		{
+			Random random = new Random(seed);
+			layouts = new ArrayList<BoardLayout>();
+			for (int i = 0; i < numLayouts; i++)
+			{
+				layouts.add(randomLayout(random, minVehicles, maxVehicles));
+			}
+		}
+
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		List<LayoutResult> results;
+		try
+		{
+			results = generator.generateAll(layouts, pool);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		boolean toDirectory = out != null && out.isDirectory();
+		PrintStream corpus = System.out;
+		if (out != null && !toDirectory)
+		{
+			corpus = new PrintStream(new BufferedOutputStream(new FileOutputStream(out)));
+		}
+		int written = 0;
+		int skipped = 0;
+		int hardest = -1;
+		for (int i = 0; i < results.size(); i++)
+		{
+			LayoutResult result = results.get(i);
+			if (result.getMaxDistance() < 0)
+			{
+				skipped++;
+			}
+			hardest = Math.max(hardest, result.getMaxDistance());
+			for (int j = 0; j < result.size(); j++)
+			{
+				PuzzleBoard board = result.getBoard(j);
+				String text = PuzzleManager.serializeVehicleArray(board.getLayout().unpack(board.getPackedState()));
+				if (toDirectory)
+				{
+					String name = String.format("board-gen-%06d-%03d-%d.txt", i, result.getDistance(j), j);
+					try (PrintStream file = new PrintStream(new File(out, name)))
+					{
+						file.print(text);
+					}
+				}
+				else
+				{
+					if (written > 0)
+					{
+						corpus.print('\n');
+					}
+					corpus.print(text);
+				}
+				written++;
+			}
+		}
+		if (corpus != System.out)
+		{
+			corpus.close();
+		}
+		else
+		{
+			corpus.flush();
+		}
+		System.err.println(String.format("%d boards from %d layouts (%d too large or unsolvable) in %.3fs; hardest %d moves",
+				written, results.size(), skipped, (System.nanoTime() - start) / 1e9, hardest));
+	}
+}
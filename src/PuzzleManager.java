@@ -2,9 +2,11 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.KeyEvent;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Scanner;
 
 public class PuzzleManager
 {
@@ -55,6 +57,22 @@ public class PuzzleManager
 	public static final int NUM_COLUMNS = 6;
 	public static final int MAX_NUM_VEHICLES = VEHICLE_COLORS.length;
 
+	// System property naming a SolutionStore file interactive solves keep
+	// solutions in across runs.  Unset by default, so nothing is written
+	// unless asked for.
+	public static final String SOLUTION_STORE_PROPERTY = "rushhour.solutionStore";
+
+	// Shared by every solve, so the distance table (or, for layouts too
+	// large to table, the pattern databases) built for a layout is reused
+	// each time the user edits or drags and asks for a new solution.
+	// Created by the first solve, so tools that only use the static board
+	// helpers never open the store.
+	private static SolverOptions solverOptions;
+
+	// Recent solutions, so a board the user reaches by following (or
+	// returning to) part of a solution already found is not solved again
+	private static final SolutionCache SOLUTION_CACHE = new SolutionCache(16);
+
 	private String boardFile;
 	private PuzzleBoard currentPuzzleBoard;
 	private Vehicle draggedVehicle;
@@ -83,6 +101,61 @@ public class PuzzleManager
 		StdDraw.show(20);
 	}
 
+	// Options for solving boards of many different layouts, as BatchSolver
+	// does.  The heuristic works on each board alone; pattern databases
+	// only pay for themselves when a layout is solved many times.
+	public static SolverOptions createSolverOptions()
+	{
+		SolverOptions options = new SolverOptions();
+		options.setOpenList(SolverOptions.OpenList.BUCKET);
+		options.setHeuristic(new BlockerAnalysisHeuristic());
+		return options;
+	}
+
+	// Interactive solves keep the layout while the user edits the board,
+	// and keep solutions across runs if SOLUTION_STORE_PROPERTY names a file
+	private static synchronized SolverOptions getInteractiveSolverOptions()
+	{
+		if (solverOptions != null)
+		{
+			return solverOptions;
+		}
+		solverOptions = createSolverOptions();
+		solverOptions.setAlgorithm(SolverOptions.Algorithm.TABLE);
+		solverOptions.setHeuristic(new PatternDatabaseHeuristic());
+		String storeFile = System.getProperty(SOLUTION_STORE_PROPERTY, "");
+		if (!storeFile.isEmpty())
+		{
+			try
+			{
+				solverOptions.setSolutionStore(new SolutionStore(new File(storeFile), true));
+			}
+			catch (IOException e)
+			{
+				System.out.println("Not using solution store " + storeFile + ": " + e.getMessage());
+			}
+		}
+		return solverOptions;
+	}
+
+	// The board files in directory, sorted by name and skipping hidden
+	// files, or null if it is not a directory
+	public static File[] listBoardFiles(File directory)
+	{
+		File[] files = directory.listFiles(new FileFilter()
+		{
+			public boolean accept(File file)
+			{
+				return file.isFile() && !file.isHidden();
+			}
+		});
+		if (files != null)
+		{
+			Arrays.sort(files);
+		}
+		return files;
+	}
+
 	private PuzzleBoard deserializeIntoPuzzleBoard(In in)
 	{
 		return new PuzzleBoard(deserializeIntoVehicleArray(in));
@@ -90,24 +163,23 @@ public class PuzzleManager
 
 	public static Vehicle[] deserializeIntoVehicleArray(In in)
 	{
+		return BulkBoardLoader.parseBoard(in.readAll());
+	}
 
-		Vehicle[] vehicleList = new Vehicle[MAX_NUM_VEHICLES];
-
-		while (in.hasNextLine())
+	// The board file format read by deserializeIntoVehicleArray, one line
+	// per vehicle in id order
+	public static String serializeVehicleArray(Vehicle[] vehicles)
+	{
+		StringBuilder text = new StringBuilder();
+		for (Vehicle v : vehicles)
 		{
-			String line = in.readLine();
-			Scanner lineScanner = new Scanner(line);
-			char c = lineScanner.next().charAt(0);
-			boolean isHorizontal = (c == 'h');
-			int row = lineScanner.nextInt();
-			int column = lineScanner.nextInt();
-			int length = lineScanner.nextInt();
-			int id = lineScanner.nextInt();
-
-			vehicleList[id] = new Vehicle(id, isHorizontal, row, column, length);
+			if (v != null)
+			{
+				text.append(v.getIsHorizontal() ? 'h' : 'v').append(' ').append(v.getLeftTopRow()).append(' ')
+						.append(v.getLeftTopColumn()).append(' ').append(v.getLength()).append(' ').append(v.getId()).append('\n');
+			}
 		}
-
-		return vehicleList;
+		return text.toString();
 	}
 
 	public PuzzleManager(PuzzleBoard puzzleBoardP)
@@ -377,10 +449,16 @@ public class PuzzleManager
 		{
 			return;
 		}
-		updateStatusText("Solving...");
-		drawStatusText();
-		Solver solver = new Solver(currentPuzzleBoard);
-		solution = solver.getPath().iterator();
+		Iterable<PuzzleBoard> path = SOLUTION_CACHE.get(currentPuzzleBoard);
+		if (path == null)
+		{
+			updateStatusText("Solving...");
+			drawStatusText();
+			Solver solver = new Solver(currentPuzzleBoard, getInteractiveSolverOptions());
+			path = solver.getPath(true);
+			SOLUTION_CACHE.put(path);
+		}
+		solution = path.iterator();
 
 		if (!solution.hasNext())
 		{
@@ -0,0 +1,13 @@
+// Watches a Solver search as it runs.  Both methods are called on the
+// solving thread, with the search's own SearchStats, which keeps changing
+// after searchProgress returns; copy out any numbers to keep.
+public interface SearchListener
+{
+	// Expansions between calls to searchProgress
+	int REPORT_INTERVAL = 1 << 14;
+
+	void searchProgress(SearchStats stats);
+
+	// Called once the search has found a solution or shown there is none
+	void searchFinished(SearchStats stats);
+}
@@ -0,0 +1,170 @@
+// What one Solver search did, for spotting boards that take far more work
+// than their solution length suggests.  Solver updates it on the solving
+// thread as it goes; see SolverOptions.setSearchListener to watch it live.
+//
+// Counts are exact.  Times are measured only on one expansion in
+// SAMPLE_INTERVAL, so the clock is read a few times per SAMPLE_INTERVAL
+// expansions, and scaled up by the number of expansions.  Only the A*
+// searches with an open list count everything; the other algorithms report
+// just the states they expanded and the elapsed time.
+public class SearchStats
+{
+	public static final int SAMPLE_INTERVAL = 64;
+
+	private long nodesGenerated;
+	private long nodesExpanded;
+	private long nodesReopened;
+	private long duplicatesPruned;
+	private int peakOpenSize;
+	private int peakClosedSize;
+	private long bytesRetained;
+
+	// Times measured on sampled expansions only
+	private long sampledExpansions;
+	private long sampledExpansionNanos;
+	private long sampledHashingNanos;
+	private long sampledQueueNanos;
+
+	private long elapsedNanos;
+	private boolean finished;
+
+	// Neighbors looked up in the table, whether or not they were queued
+	public long getNodesGenerated()
+	{
+		return nodesGenerated;
+	}
+
+	public long getNodesExpanded()
+	{
+		return nodesExpanded;
+	}
+
+	// Times a cheaper path was found to a state already queued or closed,
+	// so it was moved up the open list or opened again
+	public long getNodesReopened()
+	{
+		return nodesReopened;
+	}
+
+	// Neighbors dropped because the table already had them at no higher cost
+	public long getDuplicatesPruned()
+	{
+		return duplicatesPruned;
+	}
+
+	public int getPeakOpenSize()
+	{
+		return peakOpenSize;
+	}
+
+	public int getPeakClosedSize()
+	{
+		return peakClosedSize;
+	}
+
+	// Rough bytes held by the state table and open list, as of the last
+	// report to the listener or the end of the search
+	public long getBytesRetained()
+	{
+		return bytesRetained;
+	}
+
+	// Estimated time spent generating moves and building neighbors,
+	// excluding table lookups and queue operations
+	public long getExpansionNanos()
+	{
+		return scaled(sampledExpansionNanos);
+	}
+
+	// Estimated time spent looking up and adding states in the table
+	public long getHashingNanos()
+	{
+		return scaled(sampledHashingNanos);
+	}
+
+	// Estimated time spent inserting, updating and removing open states
+	public long getQueueNanos()
+	{
+		return scaled(sampledQueueNanos);
+	}
+
+	// Time for the whole solve, set once it is finished
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+
+	public boolean isFinished()
+	{
+		return finished;
+	}
+
+	private long scaled(long sampledNanos)
+	{
+		return (sampledExpansions == 0) ? 0 : sampledNanos * nodesExpanded / sampledExpansions;
+	}
+
+	// Whether the expansion about to start should be timed
+	boolean isSampled()
+	{
+		return nodesExpanded % SAMPLE_INTERVAL == 0;
+	}
+
+	void generated()
+	{
+		nodesGenerated++;
+	}
+
+	void reopened()
+	{
+		nodesReopened++;
+	}
+
+	void pruned()
+	{
+		duplicatesPruned++;
+	}
+
+	// Records one expansion and the open and closed sizes after it
+	void expanded(int openSize, int closedSize)
+	{
+		nodesExpanded++;
+		peakOpenSize = Math.max(peakOpenSize, openSize);
+		peakClosedSize = Math.max(peakClosedSize, closedSize);
+	}
+
+	// Records expansions counted by a search that keeps its own count
+	void addExpanded(long count)
+	{
+		nodesExpanded += count;
+	}
+
+	void addSample(long expansionNanos, long hashingNanos, long queueNanos)
+	{
+		sampledExpansions++;
+		sampledExpansionNanos += expansionNanos;
+		sampledHashingNanos += hashingNanos;
+		sampledQueueNanos += queueNanos;
+	}
+
+	void setBytesRetained(long bytes)
+	{
+		bytesRetained = bytes;
+	}
+
+	void finish(long elapsedNanosP)
+	{
+		elapsedNanos = elapsedNanosP;
+		finished = true;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "generated=" + nodesGenerated + " expanded=" + nodesExpanded + " reopened=" + nodesReopened
+				+ " pruned=" + duplicatesPruned + " peakOpen=" + peakOpenSize + " peakClosed=" + peakClosedSize
+				+ " bytes=" + bytesRetained
+				+ String.format(" expansion=%.3fms hashing=%.3fms queue=%.3fms elapsed=%.3fms",
+						getExpansionNanos() / 1e6, getHashingNanos() / 1e6, getQueueNanos() / 1e6, elapsedNanos / 1e6);
+	}
+}
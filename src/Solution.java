@@ -0,0 +1,243 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// A path from an initial board to the goal, kept as its list of moves at
+// one byte per move: the vehicle id in the high four bits and the signed
+// number of cells it slides (-8 to 7, never 0) in the low four.  Iterating
+// replays the moves, so boards exist only while a caller holds them; the
+// first board is the initial one and the rest are packed boards on its
+// layout.
+//
+// writeTo stores just the moves, with a two-byte count, for callers that
+// keep the initial board elsewhere (such as its board file).
+public class Solution implements Iterable<PuzzleBoard>
+{
+	public static final int MAX_MOVES = 0xFFFF;
+
+	private PuzzleBoard initial;
+	private BoardLayout layout;
+	private long start;
+	private byte[] moves;
+
+	// Throws IllegalArgumentException unless each move is legal and the last
+	// one reaches the goal
+	public Solution(PuzzleBoard initialP, byte[] movesP)
+	{
+		this(initialP, movesP.clone(), true);
+	}
+
+	private Solution(PuzzleBoard initialP, byte[] movesP, boolean check)
+	{
+		initial = initialP;
+		PuzzleBoard packed = initial.toPackedBoard();
+		layout = packed.getLayout();
+		start = packed.getPackedState();
+		moves = movesP;
+		if (moves.length > MAX_MOVES)
+		{
+			throw new IllegalArgumentException("More than " + MAX_MOVES + " moves: " + moves.length);
+		}
+		if (check)
+		{
+			checkMoves();
+		}
+	}
+
+	// The solution passing through states, which start at initial's state
+	// and differ by one vehicle's position at each step
+	public static Solution fromStates(PuzzleBoard initial, long[] states)
+	{
+		BoardLayout layout = initial.toPackedBoard().getLayout();
+		byte[] moves = new byte[states.length - 1];
+		for (int i = 1; i < states.length; i++)
+		{
+			int id = movedVehicle(layout, states[i - 1], states[i]);
+			moves[i - 1] = encode(id, layout.getOffset(states[i], id) - layout.getOffset(states[i - 1], id));
+		}
+		return new Solution(initial, moves, false);
+	}
+
+	// Reads moves written by writeTo, for the same initial board
+	public static Solution readFrom(DataInput in, PuzzleBoard initial) throws IOException
+	{
+		byte[] moves = new byte[in.readUnsignedShort()];
+		in.readFully(moves);
+		return new Solution(initial, moves, true);
+	}
+
+	public void writeTo(DataOutput out) throws IOException
+	{
+		out.writeShort(moves.length);
+		out.write(moves);
+	}
+
+	private static byte encode(int id, int delta)
+	{
+		if (id < 0 || id > 15 || delta < -8 || delta > 7 || delta == 0)
+		{
+			throw new IllegalArgumentException("Cannot encode vehicle " + id + " moving " + delta);
+		}
+		return (byte) ((id << 4) | (delta & 0xF));
+	}
+
+	private static int movedVehicle(BoardLayout layout, long from, long to)
+	{
+		for (int id : layout.getVehicleIds())
+		{
+			if (layout.getOffset(from, id) != layout.getOffset(to, id))
+			{
+				return id;
+			}
+		}
+		throw new IllegalArgumentException("Consecutive path states are equal");
+	}
+
+	private void checkMoves()
+	{
+		long state = start;
+		for (int i = 0; i < moves.length; i++)
+		{
+			int id = getVehicleId(i);
+			int delta = getDelta(i);
+			if (delta == 0 || !layout.hasVehicle(id))
+			{
+				throw new IllegalArgumentException("Move " + i + " is not a move: vehicle " + id + " by " + delta);
+			}
+			for (int step = 0; step < Math.abs(delta); step++)
+			{
+				if (!layout.canMove(state, layout.getOccupancy(state), id, Integer.signum(delta)))
+				{
+					throw new IllegalArgumentException("Move " + i + " is blocked: vehicle " + id + " by " + delta);
+				}
+				state = layout.move(state, id, Integer.signum(delta));
+			}
+		}
+		if (!layout.isGoal(state))
+		{
+			throw new IllegalArgumentException("Moves do not reach the goal");
+		}
+	}
+
+	public PuzzleBoard getInitial()
+	{
+		return initial;
+	}
+
+	// Number of moves, one less than the number of boards
+	public int length()
+	{
+		return moves.length;
+	}
+
+	public int getVehicleId(int move)
+	{
+		return (moves[move] >> 4) & 0xF;
+	}
+
+	// Cells the vehicle moves, negative for left / up
+	public int getDelta(int move)
+	{
+		// Sign-extends the low four bits
+		return (moves[move] << 28) >> 28;
+	}
+
+	public byte[] getMoves()
+	{
+		return moves.clone();
+	}
+
+	// The same solution with each move of several cells split into
+	// one-cell moves.  Returns this if there are none.
+	public Solution toSingleCellSteps()
+	{
+		int steps = 0;
+		for (int i = 0; i < moves.length; i++)
+		{
+			steps += Math.abs(getDelta(i));
+		}
+		if (steps == moves.length)
+		{
+			return this;
+		}
+
+		byte[] single = new byte[steps];
+		int next = 0;
+		for (int i = 0; i < moves.length; i++)
+		{
+			byte step = encode(getVehicleId(i), Integer.signum(getDelta(i)));
+			for (int j = 0; j < Math.abs(getDelta(i)); j++)
+			{
+				single[next++] = step;
+			}
+		}
+		return new Solution(initial, single, false);
+	}
+
+	// Every board from the initial one to the goal, replayed as it goes
+	public Iterator<PuzzleBoard> iterator()
+	{
+		return new Iterator<PuzzleBoard>()
+		{
+			private long state = start;
+
+			// Index of the move leading to the next board, or -1 for the
+			// initial board
+			private int move = -1;
+
+			public boolean hasNext()
+			{
+				return move < moves.length;
+			}
+
+			public PuzzleBoard next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				if (move++ < 0)
+				{
+					return initial;
+				}
+				state = layout.move(state, getVehicleId(move - 1), getDelta(move - 1));
+				return new PuzzleBoard(layout, state);
+			}
+		};
+	}
+
+	public Stream<PuzzleBoard> boards()
+	{
+		Spliterator<PuzzleBoard> boards = Spliterators.spliterator(iterator(), moves.length + 1,
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+		return StreamSupport.stream(boards, false);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return initial.hashCode() * 31 + Arrays.hashCode(moves);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass())
+		{
+			return false;
+		}
+		Solution other = (Solution) obj;
+		return initial.equals(other.initial) && Arrays.equals(moves, other.moves);
+	}
+}
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The most recently used solutions, indexed by every board on them.  Any
+// part of a shortest path that runs to the goal is a shortest path itself,
+// so a board found on a cached path is solved by the rest of that path.
+public class SolutionCache
+{
+	private int capacity;
+
+	// Cached paths by their first board, least recently used first
+	private LinkedHashMap<PuzzleBoard, List<PuzzleBoard>> paths;
+
+	// Where each board appears on a cached path
+	private Map<PuzzleBoard, Position> positions = new HashMap<PuzzleBoard, Position>();
+
+	public SolutionCache(int capacityP)
+	{
+		if (capacityP < 1)
+		{
+			throw new IllegalArgumentException("capacity must be at least 1: " + capacityP);
+		}
+		capacity = capacityP;
+		paths = new LinkedHashMap<PuzzleBoard, List<PuzzleBoard>>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PuzzleBoard, List<PuzzleBoard>> eldest)
+			{
+				if (size() <= capacity)
+				{
+					return false;
+				}
+				forget(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	// A shortest path from board to the goal, starting with board, or null
+	// if board is not on any cached path.  Do not modify the list returned.
+	public synchronized List<PuzzleBoard> get(PuzzleBoard board)
+	{
+		Position position = positions.get(board);
+		if (position == null)
+		{
+			return null;
+		}
+		// Marks the path as recently used
+		paths.get(position.path.get(0));
+		return position.path.subList(position.index, position.path.size());
+	}
+
+	// Adds a shortest path from its first board to the goal
+	public synchronized void put(Iterable<PuzzleBoard> path)
+	{
+		List<PuzzleBoard> copy = new ArrayList<PuzzleBoard>();
+		for (PuzzleBoard board : path)
+		{
+			copy.add(board);
+		}
+		if (copy.isEmpty())
+		{
+			throw new IllegalArgumentException("Empty path");
+		}
+
+		List<PuzzleBoard> replaced = paths.remove(copy.get(0));
+		if (replaced != null)
+		{
+			forget(replaced);
+		}
+		for (int i = 0; i < copy.size(); i++)
+		{
+			positions.put(copy.get(i), new Position(copy, i));
+		}
+		paths.put(copy.get(0), copy);
+	}
+
+	public synchronized int size()
+	{
+		return paths.size();
+	}
+
+	// Removes the positions that still point into path
+	private void forget(List<PuzzleBoard> path)
+	{
+		for (PuzzleBoard board : path)
+		{
+			Position position = positions.get(board);
+			if (position != null && position.path == path)
+			{
+				positions.remove(board);
+			}
+		}
+	}
+
+	private static class Position
+	{
+		private final List<PuzzleBoard> path;
+		private final int index;
+
+		public Position(List<PuzzleBoard> pathP, int indexP)
+		{
+			path = pathP;
+			index = indexP;
+		}
+	}
+}
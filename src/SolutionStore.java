@@ -0,0 +1,309 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Solved states kept on disk, so a board solved by one run is looked up
+// instead of searched by the next.  The file is a list of fixed-size
+// records, each a state with its distance to the goal and the move that
+// starts a shortest path from it:
+//
+//     0   long  layout descriptor, first half (BoardLayout.getDescriptor)
+//     8   long  layout descriptor, second half
+//     16  long  packed state
+//     24  short distance, or DistanceTable.UNREACHABLE
+//     26  byte  id of the vehicle to move next, or -1
+//     27  byte  direction to move it, -1 or +1
+//     28  int   RECORD_MARK, written with the rest so records still being
+//               written by another process are not read early
+//
+// Records are read through a read-only memory mapping, so processes that
+// open the same file share it through the OS page cache, and an in-memory
+// index maps each state to its record.  A store opened for writing appends
+// new records at the end of the file under an exclusive file lock, so
+// several batch runs can add to it at once; refresh() picks up records
+// appended by others.  Indexing stops at the first record without its
+// mark, and resumes there on the next refresh.
+public class SolutionStore implements Closeable
+{
+	public static final int RECORD_SIZE = 32;
+
+	// Distance returned for states not in the store
+	public static final int UNKNOWN = -2;
+
+	private static final int RECORD_MARK = 0x52485331;
+	private static final int NO_MOVE = -1;
+
+	private FileChannel channel;
+	private boolean writable;
+	private MappedByteBuffer records;
+	private int numRecords;
+
+	// Per layout descriptor, the record holding each state (in the
+	// StateTable's cost column)
+	private Map<LayoutKey, StateTable> index = new HashMap<LayoutKey, StateTable>();
+
+	public SolutionStore(File file, boolean writableP) throws IOException
+	{
+		writable = writableP;
+		if (writable)
+		{
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		else
+		{
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+		refresh();
+	}
+
+	// Maps and indexes any records appended since the store was opened or
+	// last refreshed
+	public synchronized void refresh()
+	{
+		try
+		{
+			long size = channel.size() / RECORD_SIZE * RECORD_SIZE;
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IllegalStateException("Store too large to map: " + size + " bytes");
+			}
+			if (records == null || size > records.capacity())
+			{
+				records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+
+		int available = records.capacity() / RECORD_SIZE;
+		for (; numRecords < available; numRecords++)
+		{
+			int position = numRecords * RECORD_SIZE;
+			if (records.getInt(position + 28) != RECORD_MARK)
+			{
+				// Still being written
+				break;
+			}
+			StateTable states = statesFor(records.getLong(position), records.getLong(position + 8), true);
+			long state = records.getLong(position + 16);
+			int entry = states.find(state);
+			if (entry == StateTable.NO_ENTRY)
+			{
+				states.add(state, numRecords, StateTable.NO_ENTRY);
+			}
+			else
+			{
+				states.setCost(entry, numRecords);
+			}
+		}
+	}
+
+	// Moves from state to the goal, DistanceTable.UNREACHABLE if it cannot
+	// reach it, or UNKNOWN if the state is not stored
+	public synchronized int getDistance(BoardLayout layout, long state)
+	{
+		int position = find(layout, state);
+		return (position < 0) ? UNKNOWN : records.getShort(position + 24);
+	}
+
+	// A shortest path from start, both ends included, or null unless every
+	// state on it is stored
+	public synchronized long[] getPath(BoardLayout layout, long start)
+	{
+		int distance = getDistance(layout, start);
+		if (distance < 0)
+		{
+			return null;
+		}
+		long[] path = new long[distance + 1];
+		path[0] = start;
+		for (int i = 1; i <= distance; i++)
+		{
+			int position = find(layout, path[i - 1]);
+			if (position < 0 || records.get(position + 26) == NO_MOVE)
+			{
+				return null;
+			}
+			path[i] = layout.move(path[i - 1], records.get(position + 26), records.get(position + 27));
+		}
+		return layout.isGoal(path[distance]) ? path : null;
+	}
+
+	// Stores every state on a shortest path not already stored, the start
+	// first, along with the move out of it
+	public void putPath(BoardLayout layout, long[] path)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(path.length * RECORD_SIZE);
+		long[] descriptor = layout.getDescriptor();
+		for (int i = 0; i < path.length; i++)
+		{
+			if (getDistance(layout, path[i]) != UNKNOWN)
+			{
+				continue;
+			}
+			int id = NO_MOVE;
+			int delta = 0;
+			if (i + 1 < path.length)
+			{
+				id = changedVehicle(layout, path[i], path[i + 1]);
+				delta = layout.getOffset(path[i + 1], id) - layout.getOffset(path[i], id);
+			}
+			putRecord(buffer, descriptor, path[i], path.length - 1 - i, id, delta);
+		}
+		append(buffer);
+	}
+
+	// Stores a state from which the goal cannot be reached
+	public void putUnreachable(BoardLayout layout, long state)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+		putRecord(buffer, layout.getDescriptor(), state, DistanceTable.UNREACHABLE, NO_MOVE, 0);
+		append(buffer);
+	}
+
+	public synchronized int size()
+	{
+		return numRecords;
+	}
+
+	public boolean isWritable()
+	{
+		return writable;
+	}
+
+	public synchronized void close() throws IOException
+	{
+		records = null;
+		channel.close();
+	}
+
+	private static int changedVehicle(BoardLayout layout, long from, long to)
+	{
+		for (int id : layout.getVehicleIds())
+		{
+			if (layout.getOffset(from, id) != layout.getOffset(to, id))
+			{
+				return id;
+			}
+		}
+		throw new IllegalArgumentException("Consecutive path states are equal");
+	}
+
+	private static void putRecord(ByteBuffer buffer, long[] descriptor, long state, int distance, int id, int delta)
+	{
+		buffer.putLong(descriptor[0]);
+		buffer.putLong(descriptor[1]);
+		buffer.putLong(state);
+		buffer.putShort((short) distance);
+		buffer.put((byte) id);
+		buffer.put((byte) delta);
+		buffer.putInt(RECORD_MARK);
+	}
+
+	// Writes whole records at the end of the file, which may have grown
+	// since it was last mapped, then indexes them
+	private void append(ByteBuffer buffer)
+	{
+		if (!writable)
+		{
+			throw new UnsupportedOperationException("Store was opened read-only");
+		}
+		buffer.flip();
+		if (!buffer.hasRemaining())
+		{
+			return;
+		}
+		try
+		{
+			synchronized (this)
+			{
+				FileLock lock = channel.lock();
+				try
+				{
+					long position = channel.size() / RECORD_SIZE * RECORD_SIZE;
+					while (buffer.hasRemaining())
+					{
+						position += channel.write(buffer, position);
+					}
+				}
+				finally
+				{
+					lock.release();
+				}
+				refresh();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Position of the record for state, or -1
+	private int find(BoardLayout layout, long state)
+	{
+		long[] descriptor = layout.getDescriptor();
+		StateTable states = statesFor(descriptor[0], descriptor[1], false);
+		if (states == null)
+		{
+			return -1;
+		}
+		int entry = states.find(state);
+		return (entry == StateTable.NO_ENTRY) ? -1 : states.getCost(entry) * RECORD_SIZE;
+	}
+
+	private StateTable statesFor(long high, long low, boolean create)
+	{
+		LayoutKey key = new LayoutKey(high, low);
+		StateTable states = index.get(key);
+		if (states == null && create)
+		{
+			states = new StateTable();
+			index.put(key, states);
+		}
+		return states;
+	}
+
+	private static class LayoutKey
+	{
+		private final long high;
+		private final long low;
+
+		public LayoutKey(long highP, long lowP)
+		{
+			high = highP;
+			low = lowP;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Long.hashCode(high * 31 + low);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass())
+			{
+				return false;
+			}
+			LayoutKey other = (LayoutKey) obj;
+			return high == other.high && low == other.low;
+		}
+	}
+}
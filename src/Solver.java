@@ -1,13 +1,60 @@
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
 
 public class Solver
 {
-	private SearchNode goalNode;
+	// Bidirectional search can list this many goal states before Solver
+	// falls back to A*
+	private static final int MAX_GOAL_STATES = 1 << 20;
+	
+	// Rough bytes for a SearchNode with its packed PuzzleBoard, and for one
+	// key's bookkeeping in UpdateableMinPQ or IndexedMinPQ, or in BucketPQ
+	// along with the entry's estimate
+	private static final int SEARCH_NODE_BYTES = 72;
+	private static final int HEAP_ENTRY_BYTES = 56;
+	private static final int BUCKET_ENTRY_BYTES = 16;
+	
+	private int goalEntry;
 	private PuzzleBoard initial;
 	
+	private SearchStats stats = new SearchStats();
+	
+	// States closed now, and for the expansion being timed (if any), the
+	// clock at its start and the time so far in the table and open list
+	private int closedCount;
+	private boolean sampling;
+	private long expansionStart;
+	private long hashingNanos;
+	private long queueNanos;
+	
+	// Every state from the start to the goal, and the same path as moves
+	private long[] pathStates;
+	private Solution solution;
+	
+	private SolverOptions options;
+	private Heuristic heuristic;
+	private BoardLayout layout;
+	
+	// Open list: queue for BINARY_HEAP, indexedQueue for D_ARY_HEAP,
+	// buckets for BUCKET
+	private UpdateableMinPQ<SearchNode> queue;
+	private IndexedMinPQ<SearchNode> indexedQueue;
+	private BucketPQ buckets;
+	
+	// Closed and open states, with their costs and parents
+	private StateTable table;
+	
+	// Queued SearchNode for each open entry, so it can be passed to updateKey
+	private SearchNode[] openNodes;
+	
+	// Heuristic estimate of each entry, for BUCKET
+	private int[] estimates;
+	
+	// Can neighbors' estimates be updated from their parent's?  Only if the
+	// start has no overlapping vehicles, and so no state searched does.
+	private boolean incremental;
+	
 	private static class SearchNode implements Comparable<SearchNode>
 	{
 		// Important!! Do not change the names or types of these fields!
@@ -15,6 +62,15 @@ public class Solver
 		private int costFromBeginningToHere;
 		private SearchNode previous;
 		
+		private int entry;
+		
+		// Handle in indexedQueue, for the D_ARY_HEAP open list
+		private int handle;
+		
+		// Computed once when the node is created, so compareTo does not
+		// rescore both boards on every heap comparison
+		private int heuristicCost;
+		
 		// You are welcome to provide an implementation in this constructor
 		// or leave it empty.  Your choice.  But DO NOT REMOVE this constructor
 		// or else tests will fail.
@@ -28,10 +84,15 @@ public class Solver
 			
 		}*/
 		
+		private int totalCost()
+		{
+			return costFromBeginningToHere + heuristicCost;
+		}
+		
 		public int compareTo(SearchNode that)
 		{
-			int costOfThat = that.board.heuristicCostToGoal()+that.costFromBeginningToHere;
-			int costOfBoard = board.heuristicCostToGoal()+costFromBeginningToHere;
+			int costOfThat = that.totalCost();
+			int costOfBoard = totalCost();
 			
 			if(costOfThat==costOfBoard)
 			{
@@ -106,66 +167,432 @@ public class Solver
 	}
 
 	public Solver(PuzzleBoard initial)
+	{
+		this(initial, new SolverOptions());
+	}
+	
+	public Solver(PuzzleBoard initial, SolverOptions options)
+	{
+		this(initial, options, options.getHeuristic());
+	}
+	
+	private Solver(PuzzleBoard initial, SolverOptions options, Heuristic heuristic)
 	{
 		this.initial = initial;
-		UpdateableMinPQ<SearchNode> queue = new UpdateableMinPQ<SearchNode>();
-		HashSet<PuzzleBoard> deleted = new HashSet<PuzzleBoard>();
-		HashMap<PuzzleBoard, SearchNode> inQueue = new HashMap<PuzzleBoard,SearchNode>();
+		this.options = options;
+		this.heuristic = heuristic;
+		table = new StateTable();
 		
-		SearchNode node = new SearchNode();
+		// Search over packed boards so each state shares one layout instead
+		// of carrying its own Vehicle array and grid
+		PuzzleBoard start = initial.toPackedBoard();
+		layout = start.getLayout();
 		
-		node.board = initial;
-		node.costFromBeginningToHere = 0;
+		long startNanos = System.nanoTime();
+		try
+		{
+			long startState = start.getPackedState();
+			// The store's distances count one-cell moves
+			SolutionStore store = options.getSlideMoves() ? null : options.getSolutionStore();
+			if(store != null)
+			{
+				if(store.getDistance(layout, startState) == DistanceTable.UNREACHABLE)
+				{
+					throw new NoSuchElementException("No solution");
+				}
+				pathStates = store.getPath(layout, startState);
+				if(pathStates != null)
+				{
+					solution = Solution.fromStates(initial, pathStates);
+					return;
+				}
+			}
 		
-		queue.insert(node);
-		//inQueue.put(initial, node);
+			try
+			{
+				search(start);
+			}
+			catch(NoSuchElementException e)
+			{
+				if(store != null && store.isWritable())
+				{
+					store.putUnreachable(layout, startState);
+				}
+				throw e;
+			}
+			if(store != null && store.isWritable())
+			{
+				store.putPath(layout, pathStates);
+			}
+			solution = Solution.fromStates(initial, pathStates);
+		}
+		finally
+		{
+			finishStats(System.nanoTime() - startNanos);
+		}
+	}
+	
+	// Runs the algorithm chosen in options and sets pathStates
+	private void search(PuzzleBoard start)
+	{
+		// Only A* searches slide moves
+		SolverOptions.Algorithm algorithm = options.getAlgorithm();
+		if(options.getSlideMoves())
+		{
+			algorithm = SolverOptions.Algorithm.A_STAR;
+		}
 		
-		//deleted.add(node.board);
-		//int distance = 0;
-		node = queue.delMin();
-		deleted.add(node.board);
+		incremental = !layout.hasOverlap(start.getPackedState());
+		long[] goals = null;
+		DistanceTable distances = null;
+		if(algorithm == SolverOptions.Algorithm.BIDIRECTIONAL && !layout.hasOverlap(start.getPackedState()))
+		{
+			goals = layout.getGoalStates(MAX_GOAL_STATES);
+		}
+		else if(algorithm == SolverOptions.Algorithm.TABLE && !layout.hasOverlap(start.getPackedState()))
+		{
+			distances = DistanceTable.forLayout(layout);
+		}
+		
+		if(distances != null)
+		{
+			pathStates = distances.getPath(start.getPackedState());
+		}
+		else if(goals != null)
+		{
+			BidirectionalSearch search = new BidirectionalSearch(layout, start.getPackedState(), goals);
+			pathStates = search.getPath();
+			stats.addExpanded(search.getNodesExpanded());
+		}
+		else if(algorithm == SolverOptions.Algorithm.IDA_STAR)
+		{
+			IdaStarSearch search = new IdaStarSearch(layout, heuristic, start.getPackedState(), options.getTranspositionTableSize());
+			pathStates = search.getPath();
+			stats.addExpanded(search.getNodesExpanded());
+		}
+		else if(algorithm == SolverOptions.Algorithm.PARALLEL_A_STAR)
+		{
+			ParallelAStarSearch search = new ParallelAStarSearch(layout, heuristic, start.getPackedState(), options.getThreads());
+			pathStates = search.getPath();
+			stats.addExpanded(search.getNodesExpanded());
+		}
+		else
+		{
+			if(options.getOpenList() == SolverOptions.OpenList.BUCKET)
+			{
+				searchWithBuckets(start.getPackedState());
+			}
+			else
+			{
+				searchWithHeap(start);
+			}
+			pathStates = tablePath(goalEntry);
+		}
+	}
+	
+	private void forEachMove(long state, NeighborVisitor visitor)
+	{
+		if(options.getSlideMoves())
+		{
+			layout.forEachSlide(state, visitor);
+		}
+		else
+		{
+			layout.forEachNeighbor(state, visitor);
+		}
+	}
+	
+	// The table is hashed on ZobristKeys, so a neighbor's hash follows from
+	// its parent entry's with two XORs.  Only the low bits of the keys are
+	// kept, which is enough since XOR mixes no bits between positions.
+	private int startHash(long start)
+	{
+		return ZobristKeys.hash(ZobristKeys.key(layout, start));
+	}
+	
+	private int hash(int parent, long parentState, int id, int delta)
+	{
+		return ZobristKeys.hash(ZobristKeys.move(layout, table.getHash(parent), parentState, id, delta));
+	}
+	
+	// Estimate for neighbor, reached from parent by moving id by delta
+	private int estimate(long parent, int parentEstimate, long neighbor, int id, int delta)
+	{
+		if(incremental)
+		{
+			return heuristic.update(layout, parent, parentEstimate, neighbor, id, delta);
+		}
+		return heuristic.estimate(layout, neighbor);
+	}
+	
+	private int moveCost(int delta)
+	{
+		return (options.getMoveMetric() == SolverOptions.MoveMetric.CELL) ? Math.abs(delta) : 1;
+	}
+	
+	// f-cost first, then the tie-break chosen in SolverOptions
+	private static class TieBreakComparator implements Comparator<SearchNode>
+	{
+		private SolverOptions.TieBreak tieBreak;
+		
+		public TieBreakComparator(SolverOptions.TieBreak tieBreakP)
+		{
+			tieBreak = tieBreakP;
+		}
+		
+		public int compare(SearchNode a, SearchNode b)
+		{
+			int result = a.compareTo(b);
+			if(result != 0 || tieBreak == SolverOptions.TieBreak.NONE)
+			{
+				return result;
+			}
+			if(tieBreak == SolverOptions.TieBreak.LOWER_HEURISTIC)
+			{
+				return Integer.compare(a.heuristicCost, b.heuristicCost);
+			}
+			return Integer.compare(a.costFromBeginningToHere, b.costFromBeginningToHere);
+		}
+	}
+	
+	private void searchWithHeap(PuzzleBoard start)
+	{
+		Comparator<SearchNode> comparator = null;
+		if(options.getTieBreak() != SolverOptions.TieBreak.NONE)
+		{
+			comparator = new TieBreakComparator(options.getTieBreak());
+		}
+		
+		if(options.getOpenList() == SolverOptions.OpenList.D_ARY_HEAP)
+		{
+			indexedQueue = new IndexedMinPQ<SearchNode>(options.getHeapArity(), comparator);
+		}
+		else if(comparator == null)
+		{
+			queue = new UpdateableMinPQ<SearchNode>();
+		}
+		else
+		{
+			queue = new UpdateableMinPQ<SearchNode>(comparator);
+		}
+		openNodes = new SearchNode[1024];
+		HeapExpander expander = new HeapExpander();
+		
+		SearchNode node = new SearchNode();
+		node.board = start;
+		node.costFromBeginningToHere = 0;
+		node.heuristicCost = heuristic.estimate(layout, start.getPackedState());
+		node.entry = table.add(start.getPackedState(), startHash(start.getPackedState()), 0, StateTable.NO_ENTRY);
+		
+		enqueue(node);
+		node = dequeue();
+		close(node.entry);
 		
 		while(!node.board.isGoal())
 		{
-			//distance++;
-			Iterable<PuzzleBoard> itb = node.board.getNeighbors();
-			Iterator<PuzzleBoard> itr = itb.iterator();
+			startExpansion();
+			expander.parent = node;
+			forEachMove(node.board.getPackedState(), expander);
+			stats.expanded(openSize(), closedCount);
 			
-			while(itr.hasNext())
+			node = dequeue();
+			close(node.entry);
+			openNodes[node.entry] = null;
+			endExpansion();
+		}
+		
+		goalEntry = node.entry;
+	}
+	
+	// Visits the moves out of parent and queues each neighbor that is not
+	// already closed.  The table is checked on the packed state, so no
+	// PuzzleBoard or SearchNode is created for neighbors that get skipped.
+	private class HeapExpander implements NeighborVisitor
+	{
+		private SearchNode parent;
+		
+		public void visitNeighbor(int id, int delta)
+		{
+			long neighbor = layout.move(parent.board.getPackedState(), id, delta);
+			int cost = parent.costFromBeginningToHere + moveCost(delta);
+			stats.generated();
+			long hashStart = clock();
+			int hash = hash(parent.entry, parent.board.getPackedState(), id, delta);
+			int entry = table.find(neighbor, hash);
+			hashingNanos += clock() - hashStart;
+			if(entry != StateTable.NO_ENTRY && cost >= table.getCost(entry))
+			{
+				stats.pruned();
+				return;
+			}
+			
+			SearchNode neighborSN = new SearchNode();
+			neighborSN.board = new PuzzleBoard(layout, neighbor);
+			neighborSN.costFromBeginningToHere = cost;
+			neighborSN.previous = parent;
+			if(entry == StateTable.NO_ENTRY)
+			{
+				neighborSN.heuristicCost = estimate(parent.board.getPackedState(), parent.heuristicCost, neighbor, id, delta);
+				hashStart = clock();
+				neighborSN.entry = table.add(neighbor, hash, cost, parent.entry);
+				hashingNanos += clock() - hashStart;
+				enqueue(neighborSN);
+			}
+			else
 			{
-				PuzzleBoard neighbor = itr.next();
-				if(!deleted.contains(neighbor))
+				neighborSN.entry = entry;
+				table.setCost(entry, cost);
+				table.setParent(entry, parent.entry);
+				stats.reopened();
+				if(table.isClosed(entry))
 				{
-					SearchNode neighborSN = new SearchNode();
-					neighborSN.board = neighbor;
-					neighborSN.costFromBeginningToHere = node.costFromBeginningToHere+1;
-					neighborSN.previous = node;
-					if(inQueue.containsKey(neighbor))
-					{
-						if(node.costFromBeginningToHere+1 < inQueue.get(neighbor).costFromBeginningToHere)
-						{
-							queue.updateKey(inQueue.get(neighbor), neighborSN);
-							inQueue.put(neighbor, neighborSN);
-						}
-					}
-					else
-					{	
-						queue.insert(neighborSN);
-						inQueue.put(neighbor, neighborSN);
-					}
-					
+					// Only possible with an inconsistent heuristic
+					neighborSN.heuristicCost = estimate(parent.board.getPackedState(), parent.heuristicCost, neighbor, id, delta);
+					reopen(entry);
+					enqueue(neighborSN);
+				}
+				else
+				{
+					neighborSN.heuristicCost = openNodes[entry].heuristicCost;
+					requeue(openNodes[entry], neighborSN);
 				}
-				
 			}
 			
-			node = queue.delMin();
-			deleted.add(node.board); 
-			inQueue.remove(node.board); 
+			if(neighborSN.entry >= openNodes.length)
+			{
+				openNodes = Arrays.copyOf(openNodes, openNodes.length * 2);
+			}
+			openNodes[neighborSN.entry] = neighborSN;
+		}
+	}
+	
+	private void enqueue(SearchNode node)
+	{
+		long queueStart = clock();
+		if(indexedQueue != null)
+		{
+			node.handle = indexedQueue.insert(node);
+		}
+		else
+		{
+			queue.insert(node);
+		}
+		queueNanos += clock() - queueStart;
+	}
+	
+	private void requeue(SearchNode oldNode, SearchNode newNode)
+	{
+		long queueStart = clock();
+		if(indexedQueue != null)
+		{
+			newNode.handle = oldNode.handle;
+			indexedQueue.decreaseKey(oldNode.handle, newNode);
+		}
+		else
+		{
+			queue.updateKey(oldNode, newNode);
+		}
+		queueNanos += clock() - queueStart;
+	}
+	
+	private SearchNode dequeue()
+	{
+		long queueStart = clock();
+		SearchNode node = (indexedQueue != null) ? indexedQueue.delMin() : queue.delMin();
+		queueNanos += clock() - queueStart;
+		return node;
+	}
+	
+	// Same search as searchWithHeap, but the open list holds bare table
+	// entries bucketed by f-cost, so no SearchNodes or boards are created
+	private void searchWithBuckets(long start)
+	{
+		SolverOptions.TieBreak tieBreak = options.getTieBreak();
+		buckets = new BucketPQ(tieBreak != SolverOptions.TieBreak.NONE, tieBreak == SolverOptions.TieBreak.LOWER_HEURISTIC);
+		BucketExpander expander = new BucketExpander();
+		
+		estimates = new int[1024];
+		int entry = table.add(start, startHash(start), 0, StateTable.NO_ENTRY);
+		estimates[entry] = heuristic.estimate(layout, start);
+		buckets.insert(entry, estimates[entry], 0);
+		
+		while(true)
+		{
+			startExpansion();
+			long queueStart = clock();
+			entry = buckets.delMin();
+			queueNanos += clock() - queueStart;
+			close(entry);
+			long state = table.getKey(entry);
+			if(layout.isGoal(state))
+			{
+				break;
+			}
 			
+			expander.parent = entry;
+			expander.parentState = state;
+			forEachMove(state, expander);
+			stats.expanded(buckets.size(), closedCount);
+			endExpansion();
 		}
 		
-		goalNode = node;
+		goalEntry = entry;
+	}
+	
+	private class BucketExpander implements NeighborVisitor
+	{
+		private int parent;
+		private long parentState;
 		
+		public void visitNeighbor(int id, int delta)
+		{
+			long neighbor = layout.move(parentState, id, delta);
+			int cost = table.getCost(parent) + moveCost(delta);
+			stats.generated();
+			long hashStart = clock();
+			int hash = hash(parent, parentState, id, delta);
+			int entry = table.find(neighbor, hash);
+			hashingNanos += clock() - hashStart;
+			if(entry == StateTable.NO_ENTRY)
+			{
+				hashStart = clock();
+				entry = table.add(neighbor, hash, cost, parent);
+				hashingNanos += clock() - hashStart;
+				if(entry == estimates.length)
+				{
+					estimates = Arrays.copyOf(estimates, estimates.length * 2);
+				}
+				estimates[entry] = estimate(parentState, estimates[parent], neighbor, id, delta);
+				int f = cost + estimates[entry];
+				long queueStart = clock();
+				buckets.insert(entry, f, cost);
+				queueNanos += clock() - queueStart;
+			}
+			else if(cost < table.getCost(entry))
+			{
+				table.setCost(entry, cost);
+				table.setParent(entry, parent);
+				stats.reopened();
+				// Estimates depend only on the state
+				int f = cost + estimates[entry];
+				long queueStart = clock();
+				if(table.isClosed(entry))
+				{
+					// Only possible with an inconsistent heuristic
+					reopen(entry);
+					buckets.insert(entry, f, cost);
+				}
+				else
+				{
+					buckets.updateKey(entry, f, cost);
+				}
+				queueNanos += clock() - queueStart;
+			}
+			else
+			{
+				stats.pruned();
+			}
+		}
 	}
 
 	public Solver(PuzzleBoard initial, boolean extraCredit)
@@ -175,18 +602,158 @@ public class Solver
 		throw new UnsupportedOperationException();
 	}
 
-	public Iterable<PuzzleBoard> getPath()
+	private void close(int entry)
+	{
+		table.setClosed(entry, true);
+		closedCount++;
+	}
+	
+	private void reopen(int entry)
+	{
+		table.setClosed(entry, false);
+		closedCount--;
+	}
+	
+	// Starts timing the next expansion if it is one SearchStats samples
+	private void startExpansion()
+	{
+		sampling = stats.isSampled();
+		hashingNanos = 0;
+		queueNanos = 0;
+		expansionStart = clock();
+	}
+	
+	// Records the time of a sampled expansion, and reports progress
+	private void endExpansion()
+	{
+		if(sampling)
+		{
+			long total = clock() - expansionStart;
+			stats.addSample(total - hashingNanos - queueNanos, hashingNanos, queueNanos);
+			sampling = false;
+		}
+		
+		SearchListener listener = options.getSearchListener();
+		if(listener != null && stats.getNodesExpanded() % SearchListener.REPORT_INTERVAL == 0)
+		{
+			stats.setBytesRetained(bytesRetained());
+			listener.searchProgress(stats);
+		}
+	}
+	
+	// The clock while an expansion is being timed, otherwise 0
+	private long clock()
+	{
+		return sampling ? System.nanoTime() : 0;
+	}
+	
+	private int openSize()
+	{
+		if(buckets != null)
+		{
+			return buckets.size();
+		}
+		return (indexedQueue != null) ? indexedQueue.size() : queue.size();
+	}
+	
+	// Estimated bytes held by the table and open list.  Closed SearchNodes
+	// stay reachable through their children's previous links.
+	private long bytesRetained()
+	{
+		long bytes = table.memoryBytes();
+		if(buckets != null)
+		{
+			bytes += (long) table.size() * BUCKET_ENTRY_BYTES;
+		}
+		else if(openNodes != null)
+		{
+			bytes += (long) (openSize() + closedCount) * SEARCH_NODE_BYTES + (long) openSize() * HEAP_ENTRY_BYTES + openNodes.length * 4L;
+		}
+		return bytes;
+	}
+	
+	private void finishStats(long elapsedNanos)
+	{
+		stats.setBytesRetained(bytesRetained());
+		stats.finish(elapsedNanos);
+		SearchListener listener = options.getSearchListener();
+		if(listener != null)
+		{
+			listener.searchFinished(stats);
+		}
+	}
+	
+	// States from the start to entry, following table parents
+	private long[] tablePath(int entry)
 	{
-		ArrayList<PuzzleBoard> path = new ArrayList<PuzzleBoard>(); 
-		SearchNode current = goalNode;
+		int length = 0;
+		for(int current = entry; current != StateTable.NO_ENTRY; current = table.getParent(current))
+		{
+			length++;
+		}
 		
-		while(current.previous != null)
+		long[] states = new long[length];
+		for(int i = length - 1; i >= 0; i--)
 		{
-			path.add(0, current.board);
-			current = current.previous;
+			states[i] = table.getKey(entry);
+			entry = table.getParent(entry);
+		}
+		return states;
+	}
+	
+	// Solves newStart, usually this board after an edit or two, reusing
+	// this search.  If the layout is unchanged and this was an A* search,
+	// the new search raises its heuristic with the costs this one found
+	// (see LearnedHeuristic), measured against the goal's cost, which
+	// counts cells rather than moves under slide moves with the CELL
+	// metric; otherwise it starts from nothing.
+	public Solver resolve(PuzzleBoard newStart)
+	{
+		if(table.size() == 0 || !newStart.toPackedBoard().getLayout().equals(layout))
+		{
+			return new Solver(newStart, options);
 		}
-		path.add(0, initial);
 		
-		return path;
+		LearnedHeuristic learned;
+		if(heuristic instanceof LearnedHeuristic)
+		{
+			learned = (LearnedHeuristic) heuristic;
+		}
+		else
+		{
+			learned = new LearnedHeuristic(heuristic);
+		}
+		return new Solver(newStart, options, learned.learn(table, table.getCost(goalEntry)));
+	}
+	
+	public int getNodesExpanded()
+	{
+		return (int) stats.getNodesExpanded();
+	}
+	
+	// What the search did, including any solution store lookup
+	public SearchStats getStats()
+	{
+		return stats;
+	}
+
+	// The moves from the initial board to the goal, one per move searched:
+	// with slide moves, a vehicle may move several cells in one
+	public Solution getSolution()
+	{
+		return solution;
+	}
+	
+	// Boards from the initial one to the goal, replayed from getSolution()
+	public Iterable<PuzzleBoard> getPath()
+	{
+		return getPath(false);
+	}
+	
+	// With singleCellSteps, slides are broken up so that consecutive boards
+	// always differ by one vehicle moving one cell
+	public Iterable<PuzzleBoard> getPath(boolean singleCellSteps)
+	{
+		return singleCellSteps ? solution.toSingleCellSteps() : solution;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,509 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+// Times the solver's hot paths on every board file in a directory:
+// building a board, listing its neighbors, scoring it, hashing and comparing
+// it, and solving it, plus operations on each open list at sizes seen while
+// solving.  "solve" uses the options the tools ship with
+// (PuzzleManager.createSolverOptions), and "solve.<open list>" the default
+// options with each open list.  Each benchmark is warmed up first, then run for a
+// fixed time per measured iteration, and reported as the mean time per
+// operation with its standard deviation across iterations and, where the
+// JVM can count them, the bytes allocated per operation.
+//
+// Before timing anything, a neighbor of each board is re-solved with
+// Solver.resolve, and the run fails unless that expands at least a tenth
+// fewer states in total than solving the neighbors cold.
+//
+// Usage: SolverBenchmark [directory] [-filter text] [-warmup n]
+//                        [-iterations n] [-time ms] [-out file]
+//
+// The directory defaults to testInput, and hidden files in it are skipped.
+// -filter runs only benchmarks whose name contains the text.  Random
+// inputs use a fixed seed, so runs on the same machine and JVM can be
+// compared.
+public class SolverBenchmark
+{
+	private static final String DEFAULT_DIRECTORY = "testInput";
+	private static final int[] QUEUE_SIZES = {1 << 10, 1 << 14, 1 << 17};
+	private static final long SEED = 42;
+
+	// One benchmarked operation.  Returns something derived from its work so
+	// the JIT cannot drop it as dead code.
+	private interface Operation
+	{
+		long run();
+	}
+
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationNanos = 200000000L;
+	private String filter = "";
+	private PrintStream out;
+
+	private com.sun.management.ThreadMXBean threads;
+
+	// Sink for operation results
+	private volatile long sink;
+
+	public SolverBenchmark(PrintStream outP)
+	{
+		out = outP;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+		{
+			threads = (com.sun.management.ThreadMXBean) bean;
+			threads.setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+
+	public void runBoards(File[] files)
+	{
+		for (File file : files)
+		{
+			In in = new In(file);
+			final Vehicle[] vehicles = PuzzleManager.deserializeIntoVehicleArray(in);
+			in.close();
+			String name = file.getName();
+
+			final PuzzleBoard board = new PuzzleBoard(vehicles);
+			final PuzzleBoard copy = new PuzzleBoard(vehicles);
+			final PuzzleBoard packed = board.toPackedBoard();
+			final PuzzleBoard packedCopy = board.toPackedBoard();
+
+			run("construct", name, new Operation()
+			{
+				public long run()
+				{
+					return new PuzzleBoard(vehicles).hashCode();
+				}
+			});
+			run("neighbors", name, new Operation()
+			{
+				public long run()
+				{
+					return countNeighbors(board);
+				}
+			});
+			run("neighbors.packed", name, new Operation()
+			{
+				public long run()
+				{
+					return countNeighbors(packed);
+				}
+			});
+			run("heuristic", name, new Operation()
+			{
+				public long run()
+				{
+					return board.heuristicCostToGoal();
+				}
+			});
+			run("heuristic.packed", name, new Operation()
+			{
+				public long run()
+				{
+					return packed.heuristicCostToGoal();
+				}
+			});
+			run("hashEquals", name, new Operation()
+			{
+				public long run()
+				{
+					return board.hashCode() + (board.equals(copy) ? 1 : 0);
+				}
+			});
+			run("hashEquals.packed", name, new Operation()
+			{
+				public long run()
+				{
+					return packed.hashCode() + (packed.equals(packedCopy) ? 1 : 0);
+				}
+			});
+			run("searchKey", name, new Operation()
+			{
+				public long run()
+				{
+					return board.searchKey();
+				}
+			});
+			run("searchKey.packed", name, new Operation()
+			{
+				public long run()
+				{
+					return packed.searchKey();
+				}
+			});
+			run("solve", name, solve(board, PuzzleManager.createSolverOptions()));
+			for (SolverOptions.OpenList openList : SolverOptions.OpenList.values())
+			{
+				SolverOptions options = new SolverOptions();
+				options.setOpenList(openList);
+				run("solve." + openList, name, solve(board, options));
+			}
+		}
+	}
+
+	private static Operation solve(final PuzzleBoard board, final SolverOptions options)
+	{
+		return new Operation()
+		{
+			public long run()
+			{
+				try
+				{
+					return new Solver(board, options).getNodesExpanded();
+				}
+				catch (NoSuchElementException e)
+				{
+					return -1;
+				}
+			}
+		};
+	}
+
+	// Checks that warm starts still pay off: re-solving a neighbor of each
+	// board with Solver.resolve must expand at least a tenth fewer states in
+	// total than solving the same neighbors cold.  Single boards may go
+	// either way, since the learned costs reorder ties in f-cost.
+	public void checkResolve(File[] files)
+	{
+		SolverOptions options = new SolverOptions();
+		long cold = 0;
+		long warm = 0;
+		for (File file : files)
+		{
+			In in = new In(file);
+			PuzzleBoard board = new PuzzleBoard(PuzzleManager.deserializeIntoVehicleArray(in));
+			in.close();
+			Iterator<PuzzleBoard> neighbors = board.getNeighbors().iterator();
+			if (board.isGoal() || !neighbors.hasNext())
+			{
+				continue;
+			}
+			PuzzleBoard neighbor = neighbors.next();
+
+			try
+			{
+				Solver solver = new Solver(board, options);
+				int coldExpanded = new Solver(neighbor, options).getNodesExpanded();
+				int warmExpanded = solver.resolve(neighbor).getNodesExpanded();
+				cold += coldExpanded;
+				warm += warmExpanded;
+			}
+			catch (NoSuchElementException e)
+			{
+				// Unsolvable either way
+			}
+		}
+		out.println("# resolve: " + cold + " states expanded cold, " + warm + " warm");
+		if (warm * 10 > cold * 9)
+		{
+			throw new IllegalStateException("Warm starts expanded " + warm + " states, " + cold + " cold");
+		}
+	}
+
+	private static long countNeighbors(PuzzleBoard board)
+	{
+		long count = 0;
+		for (PuzzleBoard neighbor : board.getNeighbors())
+		{
+			count++;
+		}
+		return count;
+	}
+
+	// Queue operations on each open list with a steady number of keys
+	// queued, as in the middle of a search
+	public void runQueues()
+	{
+		for (int size : QUEUE_SIZES)
+		{
+			runHeap(size);
+			runIndexedHeap(size);
+			runBuckets(size);
+		}
+	}
+
+	private void runHeap(int size)
+	{
+		final Random random = new Random(SEED);
+		final Key[] queued = new Key[size];
+		final UpdateableMinPQ<Key> queue = fillQueue(queued, random);
+		final UpdateableMinPQ<Key> updated = fillQueue(queued, random);
+		String name = "size=" + size;
+
+		run("pq.insertDelMin", name, new Operation()
+		{
+			public long run()
+			{
+				queue.insert(new Key(queue.min().priority + random.nextInt(64)));
+				return queue.delMin().priority;
+			}
+		});
+		// Lowers a random key, as when a cheaper path to a state is found
+		run("pq.updateKey", name, new Operation()
+		{
+			public long run()
+			{
+				int i = random.nextInt(queued.length);
+				Key lowered = new Key(queued[i].priority - 1 - random.nextInt(4));
+				updated.updateKey(queued[i], lowered);
+				queued[i] = lowered;
+				return lowered.priority;
+			}
+		});
+	}
+
+	private void runIndexedHeap(int size)
+	{
+		final Random random = new Random(SEED);
+		final Key[] queued = new Key[size];
+		final int[] handles = new int[size];
+		final IndexedMinPQ<Key> queue = new IndexedMinPQ<Key>();
+		final IndexedMinPQ<Key> updated = new IndexedMinPQ<Key>();
+		for (int i = 0; i < size; i++)
+		{
+			queue.insert(new Key(random.nextInt(size)));
+		}
+		for (int i = 0; i < size; i++)
+		{
+			queued[i] = new Key(random.nextInt(size));
+			handles[i] = updated.insert(queued[i]);
+		}
+		String name = "size=" + size;
+
+		run("dary.insertDelMin", name, new Operation()
+		{
+			public long run()
+			{
+				queue.insert(new Key(queue.min().priority + random.nextInt(64)));
+				return queue.delMin().priority;
+			}
+		});
+		run("dary.decreaseKey", name, new Operation()
+		{
+			public long run()
+			{
+				int i = random.nextInt(queued.length);
+				Key lowered = new Key(queued[i].priority - 1 - random.nextInt(4));
+				updated.decreaseKey(handles[i], lowered);
+				queued[i] = lowered;
+				return lowered.priority;
+			}
+		});
+	}
+
+	// BucketPQ priorities cannot go below 0, so a key lowered past it is
+	// moved to a random priority instead
+	private void runBuckets(final int size)
+	{
+		final Random random = new Random(SEED);
+		final int[] priorities = new int[size + 1];
+		final BucketPQ queue = new BucketPQ();
+		final BucketPQ updated = new BucketPQ();
+		for (int entry = 0; entry < size; entry++)
+		{
+			priorities[entry] = random.nextInt(size);
+			queue.insert(entry, priorities[entry], 0);
+		}
+		final int[] updatedPriorities = new int[size];
+		for (int entry = 0; entry < size; entry++)
+		{
+			updatedPriorities[entry] = random.nextInt(size);
+			updated.insert(entry, updatedPriorities[entry], 0);
+		}
+		String name = "size=" + size;
+
+		run("bucket.insertDelMin", name, new Operation()
+		{
+			// Entry not on the queue, and the last priority taken off it
+			private int spare = size;
+			private int min = 0;
+
+			public long run()
+			{
+				priorities[spare] = min + random.nextInt(64);
+				queue.insert(spare, priorities[spare], 0);
+				spare = queue.delMin();
+				min = priorities[spare];
+				return min;
+			}
+		});
+		run("bucket.updateKey", name, new Operation()
+		{
+			public long run()
+			{
+				int entry = random.nextInt(size);
+				int lowered = updatedPriorities[entry] - 1 - random.nextInt(4);
+				if (lowered < 0)
+				{
+					lowered = random.nextInt(size);
+				}
+				updated.updateKey(entry, lowered, 0);
+				updatedPriorities[entry] = lowered;
+				return lowered;
+			}
+		});
+	}
+
+	// A queue of random keys, which are also put in queued
+	private static UpdateableMinPQ<Key> fillQueue(Key[] queued, Random random)
+	{
+		UpdateableMinPQ<Key> queue = new UpdateableMinPQ<Key>();
+		for (int i = 0; i < queued.length; i++)
+		{
+			queued[i] = new Key(random.nextInt(queued.length));
+			queue.insert(queued[i]);
+		}
+		return queue;
+	}
+
+	// Queue keys compare by priority and are equal only to themselves
+	private static class Key implements Comparable<Key>
+	{
+		private final int priority;
+
+		public Key(int priorityP)
+		{
+			priority = priorityP;
+		}
+
+		public int compareTo(Key other)
+		{
+			return Integer.compare(priority, other.priority);
+		}
+	}
+
+	private void run(String benchmark, String parameter, Operation operation)
+	{
+		if (!benchmark.contains(filter))
+		{
+			return;
+		}
+		for (int i = 0; i < warmupIterations; i++)
+		{
+			measure(operation);
+		}
+		double[] nanosPerOp = new double[iterations];
+		double bytesPerOp = 0;
+		for (int i = 0; i < iterations; i++)
+		{
+			double[] result = measure(operation);
+			nanosPerOp[i] = result[0];
+			bytesPerOp += result[1] / iterations;
+		}
+
+		double mean = 0;
+		for (double value : nanosPerOp)
+		{
+			mean += value / iterations;
+		}
+		double variance = 0;
+		for (double value : nanosPerOp)
+		{
+			variance += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+		}
+		String bytes = (threads == null) ? "n/a" : String.format("%.1f", bytesPerOp);
+		out.println(String.format("%-20s %-48s %14.1f ns/op +- %-12.1f %12s B/op",
+				benchmark, parameter, mean, Math.sqrt(variance), bytes));
+	}
+
+	// Runs operation for at least iterationNanos and at least once, and
+	// returns the nanoseconds and bytes allocated per operation
+	private double[] measure(Operation operation)
+	{
+		long threadId = Thread.currentThread().getId();
+		long bytesBefore = (threads == null) ? 0 : threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long elapsed;
+		long operations = 0;
+		long result = 0;
+		do
+		{
+			result += operation.run();
+			operations++;
+			elapsed = System.nanoTime() - start;
+		}
+		while (elapsed < iterationNanos);
+		long bytesAfter = (threads == null) ? 0 : threads.getThreadAllocatedBytes(threadId);
+		sink = result;
+		return new double[] {(double) elapsed / operations, (double) (bytesAfter - bytesBefore) / operations};
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		String directory = DEFAULT_DIRECTORY;
+		PrintStream out = System.out;
+		List<String> settings = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-out"))
+			{
+				out = new PrintStream(args[++i]);
+			}
+			else if (args[i].startsWith("-"))
+			{
+				settings.add(args[i]);
+				settings.add(args[++i]);
+			}
+			else
+			{
+				directory = args[i];
+			}
+		}
+
+		SolverBenchmark benchmark = new SolverBenchmark(out);
+		for (int i = 0; i < settings.size(); i += 2)
+		{
+			String value = settings.get(i + 1);
+			if (settings.get(i).equals("-filter"))
+			{
+				benchmark.filter = value;
+			}
+			else if (settings.get(i).equals("-warmup"))
+			{
+				benchmark.warmupIterations = Integer.parseInt(value);
+			}
+			else if (settings.get(i).equals("-iterations"))
+			{
+				benchmark.iterations = Integer.parseInt(value);
+			}
+			else if (settings.get(i).equals("-time"))
+			{
+				benchmark.iterationNanos = Long.parseLong(value) * 1000000L;
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown option: " + settings.get(i));
+			}
+		}
+		if (benchmark.iterations < 1)
+		{
+			throw new IllegalArgumentException("iterations must be at least 1: " + benchmark.iterations);
+		}
+
+		File[] files = PuzzleManager.listBoardFiles(new File(directory));
+		if (files == null)
+		{
+			throw new IllegalArgumentException("Not a directory: " + directory);
+		}
+
+		out.println("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+				+ ", " + Runtime.getRuntime().availableProcessors() + " processors"
+				+ ", warmup " + benchmark.warmupIterations + ", iterations " + benchmark.iterations
+				+ ", " + benchmark.iterationNanos / 1000000L + " ms each");
+		benchmark.checkResolve(files);
+		benchmark.runBoards(files);
+		benchmark.runQueues();
+		out.close();
+	}
+}
@@ -0,0 +1,209 @@
+// Settings for a Solver run.  The defaults reproduce the original search.
+public class SolverOptions
+{
+	public enum Algorithm
+	{
+		A_STAR,
+
+		// BidirectionalSearch from the start and every goal state.  Ignores
+		// the open list, tie-break and heuristic settings, and falls back to
+		// A* if the goal states cannot all be listed.
+		BIDIRECTIONAL,
+
+		// IdaStarSearch, which keeps only the current path and the
+		// transposition table.  Ignores the open list and tie-break
+		// settings.
+		IDA_STAR,
+
+		// ParallelAStarSearch on getThreads() threads.  Ignores the open
+		// list and tie-break settings.
+		PARALLEL_A_STAR,
+
+		// Shortest path read from the layout's DistanceTable, built the
+		// first time the layout is solved.  Falls back to A* if the layout
+		// has too many states to table or the board overlaps itself.
+		TABLE,
+	}
+
+	public enum OpenList
+	{
+		// UpdateableMinPQ of SearchNodes, compared by f-cost
+		BINARY_HEAP,
+
+		// IndexedMinPQ of SearchNodes, a d-ary heap with int handles
+		D_ARY_HEAP,
+
+		// BucketPQ of StateTable entries, indexed by f-cost
+		BUCKET,
+	}
+
+	// What a solution's length counts
+	public enum MoveMetric
+	{
+		// Each cell a vehicle slides
+		CELL,
+
+		// Each slide of a vehicle, however far
+		VEHICLE,
+	}
+
+	// How to order open states with equal f-cost
+	public enum TieBreak
+	{
+		NONE,
+
+		// Closest to the goal by the heuristic, which for equal f is also
+		// the furthest from the start
+		LOWER_HEURISTIC,
+
+		// Closest to the start
+		LOWER_COST,
+	}
+
+	private Algorithm algorithm = Algorithm.A_STAR;
+	private OpenList openList = OpenList.BINARY_HEAP;
+	private TieBreak tieBreak = TieBreak.NONE;
+	private int heapArity = 4;
+	private int transpositionTableSize = 1 << 16;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private SolutionStore solutionStore;
+	private MoveMetric moveMetric = MoveMetric.CELL;
+	private boolean slideMoves = false;
+	private SearchListener searchListener;
+
+	// null until set, meaning the default for the move metric
+	private Heuristic heuristic;
+
+	public Algorithm getAlgorithm()
+	{
+		return algorithm;
+	}
+
+	public void setAlgorithm(Algorithm algorithmP)
+	{
+		algorithm = algorithmP;
+	}
+
+	public OpenList getOpenList()
+	{
+		return openList;
+	}
+
+	public void setOpenList(OpenList openListP)
+	{
+		openList = openListP;
+	}
+
+	public int getHeapArity()
+	{
+		return heapArity;
+	}
+
+	// Children per node for the D_ARY_HEAP open list
+	public void setHeapArity(int heapArityP)
+	{
+		heapArity = heapArityP;
+	}
+
+	public int getTranspositionTableSize()
+	{
+		return transpositionTableSize;
+	}
+
+	// Entries in the IDA_STAR transposition table, or 0 for none
+	public void setTranspositionTableSize(int transpositionTableSizeP)
+	{
+		transpositionTableSize = transpositionTableSizeP;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	// Worker threads for PARALLEL_A_STAR
+	public void setThreads(int threadsP)
+	{
+		threads = threadsP;
+	}
+
+	public SolutionStore getSolutionStore()
+	{
+		return solutionStore;
+	}
+
+	// Store checked before searching, or null for none.  If it is writable,
+	// each solution found (or board found unsolvable) is added to it.
+	public void setSolutionStore(SolutionStore solutionStoreP)
+	{
+		solutionStore = solutionStoreP;
+	}
+
+	public SearchListener getSearchListener()
+	{
+		return searchListener;
+	}
+
+	// Listener told of each search's SearchStats as it runs, or null for
+	// none.  Solvers sharing these options share the listener, and may call
+	// it from several threads at once.
+	public void setSearchListener(SearchListener searchListenerP)
+	{
+		searchListener = searchListenerP;
+	}
+
+	public MoveMetric getMoveMetric()
+	{
+		return moveMetric;
+	}
+
+	public void setMoveMetric(MoveMetric moveMetricP)
+	{
+		moveMetric = moveMetricP;
+	}
+
+	// Are neighbors every place a vehicle can slide to (true), or only one
+	// cell away (false)?  Always true for the VEHICLE metric.
+	public boolean getSlideMoves()
+	{
+		return slideMoves || moveMetric == MoveMetric.VEHICLE;
+	}
+
+	// Slide moves reach the same solutions in fewer, longer steps.  They
+	// are only searched with A*, whatever the algorithm setting.
+	public void setSlideMoves(boolean slideMovesP)
+	{
+		slideMoves = slideMovesP;
+	}
+
+	// BlockingHeuristic, or BlockingVehiclesHeuristic for the VEHICLE metric,
+	// unless set
+	public Heuristic getHeuristic()
+	{
+		if (heuristic != null)
+		{
+			return heuristic;
+		}
+		return (moveMetric == MoveMetric.VEHICLE) ? new BlockingVehiclesHeuristic() : new BlockingHeuristic();
+	}
+
+	// Lower bound used to order the search.  BlockingHeuristic is the
+	// original one; BlockerAnalysisHeuristic is tighter but costs more per
+	// state.  Closed states are reopened if the heuristic turns out to be
+	// inconsistent, so any heuristic admissible for the move metric gives a
+	// shortest path.
+	public void setHeuristic(Heuristic heuristicP)
+	{
+		heuristic = heuristicP;
+	}
+
+	public TieBreak getTieBreak()
+	{
+		return tieBreak;
+	}
+
+	public void setTieBreak(TieBreak tieBreakP)
+	{
+		tieBreak = tieBreakP;
+	}
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+
+// Open-addressing hash table keyed by packed board state (see BoardLayout).
+// States are stored densely in the order they are added, so an entry index
+// doubles as a compact node id: each entry records its cost from the start,
+// the entry index of its parent and whether it has been closed.  Lookups
+// are a few array reads with no boxing.
+//
+// find and add hash keys themselves, unless given a precomputed hash such as
+// a ZobristKeys key that the caller updates incrementally.  A table must be
+// used one way or the other throughout, since a key's slot depends on its
+// hash.  The first add fixes which way, and calls the other way afterwards
+// throw IllegalStateException.
+public class StateTable
+{
+	public static final int NO_ENTRY = -1;
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	// How the table is hashed, fixed by the first add
+	private static final int UNSET = 0;
+	private static final int BUILT_IN = 1;
+	private static final int PRECOMPUTED = 2;
+
+	// Dense per-entry columns, indexed by entry
+	private long[] keys;
+	private int[] costs;
+	private int[] parents;
+	private boolean[] closed;
+	private int[] hashes;
+	private int size;
+	private int hashing = UNSET;
+
+	// Linear probing over slots; each slot holds entry + 1, or 0 if empty
+	private int[] slots;
+	private int mask;
+
+	public StateTable()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public StateTable(int expectedSize)
+	{
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 16) - 1) << 1;
+		keys = new long[capacity];
+		costs = new int[capacity];
+		parents = new int[capacity];
+		closed = new boolean[capacity];
+		hashes = new int[capacity];
+		slots = new int[capacity * 2];
+		mask = slots.length - 1;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	// Bytes held by the table's arrays, including unused capacity
+	public long memoryBytes()
+	{
+		return keys.length * 21L + slots.length * 4L;
+	}
+
+	// Returns the entry for key, or NO_ENTRY
+	public int find(long key)
+	{
+		checkHashing(BUILT_IN, false);
+		return findSlot(key, hash(key));
+	}
+
+	// Returns the entry for key, or NO_ENTRY, given key's precomputed hash
+	public int find(long key, int hash)
+	{
+		checkHashing(PRECOMPUTED, false);
+		return findSlot(key, hash);
+	}
+
+	private int findSlot(long key, int hash)
+	{
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask)
+		{
+			int entry = slots[slot] - 1;
+			if (entry == NO_ENTRY || keys[entry] == key)
+			{
+				return entry;
+			}
+		}
+	}
+
+	// Adds key, which must not already be in the table, and returns its
+	// new entry
+	public int add(long key, int cost, int parent)
+	{
+		checkHashing(BUILT_IN, true);
+		return addEntry(key, hash(key), cost, parent);
+	}
+
+	// Same as add(key, cost, parent), given key's precomputed hash
+	public int add(long key, int hash, int cost, int parent)
+	{
+		checkHashing(PRECOMPUTED, true);
+		return addEntry(key, hash, cost, parent);
+	}
+
+	private int addEntry(long key, int hash, int cost, int parent)
+	{
+		if (size == keys.length)
+		{
+			grow();
+		}
+
+		int entry = size++;
+		keys[entry] = key;
+		costs[entry] = cost;
+		parents[entry] = parent;
+		hashes[entry] = hash;
+		insertSlot(hash, entry);
+		return entry;
+	}
+
+	public long getKey(int entry)
+	{
+		return keys[entry];
+	}
+
+	// The hash entry's key was added with
+	public int getHash(int entry)
+	{
+		return hashes[entry];
+	}
+
+	public int getCost(int entry)
+	{
+		return costs[entry];
+	}
+
+	public void setCost(int entry, int cost)
+	{
+		costs[entry] = cost;
+	}
+
+	public int getParent(int entry)
+	{
+		return parents[entry];
+	}
+
+	public void setParent(int entry, int parent)
+	{
+		parents[entry] = parent;
+	}
+
+	public boolean isClosed(int entry)
+	{
+		return closed[entry];
+	}
+
+	public void setClosed(int entry, boolean isClosed)
+	{
+		closed[entry] = isClosed;
+	}
+
+	// Throws unless the table is hashed the given way.  An empty table
+	// takes the way of its first add.
+	private void checkHashing(int way, boolean adding)
+	{
+		if (hashing == way)
+		{
+			return;
+		}
+		if (hashing == UNSET)
+		{
+			if (adding)
+			{
+				hashing = way;
+			}
+			return;
+		}
+		throw new IllegalStateException((way == BUILT_IN)
+				? "Table is hashed on precomputed hashes; pass the key's hash"
+				: "Table is hashed on its built-in hash; do not pass a hash");
+	}
+
+	private void insertSlot(int hash, int entry)
+	{
+		int slot = hash & mask;
+		while (slots[slot] != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = entry + 1;
+	}
+
+	// Doubles the entry columns and rebuilds the slots at a load factor of
+	// at most one half
+	private void grow()
+	{
+		int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		costs = Arrays.copyOf(costs, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		closed = Arrays.copyOf(closed, capacity);
+		hashes = Arrays.copyOf(hashes, capacity);
+
+		slots = new int[capacity * 2];
+		mask = slots.length - 1;
+		for (int entry = 0; entry < size; entry++)
+		{
+			insertSlot(hashes[entry], entry);
+		}
+	}
+
+	// Packed states differ in a few low bits, so mix every bit into the
+	// bits used to pick a slot (MurmurHash3 finalizer)
+	private static int hash(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
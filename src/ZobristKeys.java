@@ -0,0 +1,78 @@
+import java.util.Random;
+
+// Zobrist search keys for boards: a fixed random long for every vehicle id
+// and offset, XORed together over a board's vehicles.  Unlike
+// PuzzleBoard.hashCode(), whose value is fixed by contract, every bit of a
+// key is well mixed, and moving one vehicle changes the key by just two
+// table entries, so a neighbor's key follows from its parent's with two
+// XORs (see move).
+//
+// StateTable.find and add take the low bits of a key as a precomputed
+// hash.  Keys are the same for equal boards, packed or not, and for every
+// run, since the table comes from a fixed seed.
+public class ZobristKeys
+{
+	public static final int MAX_IDS = Long.SIZE / BoardLayout.BITS_PER_VEHICLE;
+
+	private static final int NUM_OFFSETS = 1 << BoardLayout.BITS_PER_VEHICLE;
+
+	private static final long SEED = 0x5DEECE66DL;
+
+	// KEYS[id * NUM_OFFSETS + offset]
+	private static final long[] KEYS = new long[MAX_IDS * NUM_OFFSETS];
+
+	static
+	{
+		Random random = new Random(SEED);
+		for (int i = 0; i < KEYS.length; i++)
+		{
+			KEYS[i] = random.nextLong();
+		}
+	}
+
+	// Table entry for vehicle id at offset
+	public static long get(int id, int offset)
+	{
+		return KEYS[id * NUM_OFFSETS + offset];
+	}
+
+	// Key of a packed state on layout
+	public static long key(BoardLayout layout, long state)
+	{
+		long key = 0;
+		for (int id : layout.getVehicleIds())
+		{
+			key ^= KEYS[id * NUM_OFFSETS + layout.getOffset(state, id)];
+		}
+		return key;
+	}
+
+	// Key of an unpacked board, the same as key(layout, state) for the same
+	// board packed
+	public static long key(Vehicle[] idToVehicle)
+	{
+		long key = 0;
+		for (Vehicle v : idToVehicle)
+		{
+			if (v != null)
+			{
+				int offset = v.getIsHorizontal() ? v.getLeftTopColumn() : v.getLeftTopRow();
+				key ^= KEYS[v.getId() * NUM_OFFSETS + offset];
+			}
+		}
+		return key;
+	}
+
+	// Key of layout.move(state, id, delta), given state's key
+	public static long move(BoardLayout layout, long key, long state, int id, int delta)
+	{
+		int offset = layout.getOffset(state, id);
+		return key ^ KEYS[id * NUM_OFFSETS + offset] ^ KEYS[id * NUM_OFFSETS + offset + delta];
+	}
+
+	// Hash for StateTable.find and add
+	public static int hash(long key)
+	{
+		return (int) key;
+	}
+}